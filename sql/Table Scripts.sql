@@ -9,6 +9,9 @@ DROP TABLE CHAT_ROOM_JOIN;
 DROP TABLE CHAT_ROOM;
 DROP TABLE MEMBER;
 
+DROP TABLE JOB_RUN_HISTORY;
+DROP TABLE JOB_LOCK;
+
 
 DROP SEQUENCE SEQ_IMG_NO;
 DROP SEQUENCE SEQ_CM_NO;
@@ -16,6 +19,7 @@ DROP SEQUENCE SEQ_CR_NO;
 DROP SEQUENCE SEQ_UNO;
 DROP SEQUENCE SEQ_BNO;
 DROP SEQUENCE SEQ_RNO;
+DROP SEQUENCE SEQ_JOB_RUN_NO;
 
 --------------------------------------------------
 ------------------  MEMBER     -------------------
@@ -70,17 +74,20 @@ CREATE TABLE BOARD(
   COUNT NUMBER DEFAULT 0,
   CREATE_DATE DATE DEFAULT SYSDATE,
   STATUS VARCHAR2(1) DEFAULT 'Y' CHECK (STATUS IN('Y', 'N')),
+  MODIFY_DATE TIMESTAMP DEFAULT SYSTIMESTAMP, -- 등록/수정/삭제 시각. 수정, 삭제(STATUS 변경) 시에도 SYSTIMESTAMP로 변경
   FOREIGN KEY (BOARD_WRITER) REFERENCES MEMBER
 );
 
 CREATE SEQUENCE SEQ_BNO NOCACHE;
+-- 서버별 검색 인덱스 동기화용 (마지막 확인 이후 수정된 게시글만 조회)
+CREATE INDEX IDX_BOARD_MODIFY ON BOARD(MODIFY_DATE);
 
 
 BEGIN
     FOR I IN 1..1000
     LOOP
         INSERT INTO BOARD VALUES 
-        (SEQ_BNO.NEXTVAL , '일반게시글' || I , '게시글내용' || I,'N',1, DEFAULT, DEFAULT, DEFAULT);
+        (SEQ_BNO.NEXTVAL , '일반게시글' || I , '게시글내용' || I,'N',1, DEFAULT, DEFAULT, DEFAULT, DEFAULT);
     END LOOP;
 END;
 /
@@ -134,6 +141,9 @@ CREATE TABLE CHAT_MESSAGE(
     USER_NO NUMBER REFERENCES MEMBER
 );
 
+-- 채팅방별 최근/이전 메세지 페이지 조회용 (CM_NO 역순으로 읽고 필요한 개수에서 멈춤)
+CREATE INDEX IDX_CHAT_MESSAGE_ROOM ON CHAT_MESSAGE (CHAT_ROOM_NO, CM_NO);
+
 CREATE TABLE CHAT_ROOM_JOIN (
     USER_NO NUMBER REFERENCES MEMBER, 
     CHAT_ROOM_NO NUMBER REFERENCES CHAT_ROOM,
@@ -143,6 +153,34 @@ CREATE TABLE CHAT_ROOM_JOIN (
 CREATE SEQUENCE SEQ_CR_NO;
 CREATE SEQUENCE SEQ_CM_NO;
 
+----------------------------------------------------
+-------------------- SCHEDULING  -------------------
+----------------------------------------------------
+
+-- 스케쥴러 작업 잠금(lease). 여러 서버 중 잠금을 얻은 한 대만 작업을 수행
+CREATE TABLE JOB_LOCK(
+    JOB_NAME VARCHAR2(100) PRIMARY KEY,
+    LOCKED_BY VARCHAR2(200),
+    LOCKED_AT TIMESTAMP,
+    LOCKED_UNTIL TIMESTAMP NOT NULL,
+    WATERMARK NUMBER DEFAULT 0 -- 작업별 진행 위치 (증분 파일 정리 : 검사 완료 시각, epoch ms)
+);
+
+-- 스케쥴러 작업 실행 이력
+CREATE TABLE JOB_RUN_HISTORY(
+    RUN_NO NUMBER PRIMARY KEY,
+    JOB_NAME VARCHAR2(100) NOT NULL,
+    RUN_BY VARCHAR2(200),
+    START_TIME TIMESTAMP,
+    DURATION NUMBER, -- ms
+    STATUS VARCHAR2(1) CHECK (STATUS IN('S', 'F')), -- S : 성공, F : 실패
+    ERROR_MSG VARCHAR2(4000)
+);
+
+CREATE SEQUENCE SEQ_JOB_RUN_NO NOCACHE;
+-- 보관기간이 지난 이력 삭제용
+CREATE INDEX IDX_JOB_RUN_HISTORY_START ON JOB_RUN_HISTORY(START_TIME);
+
 
 
 
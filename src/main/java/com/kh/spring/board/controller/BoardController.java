@@ -1,27 +1,22 @@
 package com.kh.spring.board.controller;
 
 import java.io.File;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
-import javax.annotation.PostConstruct;
 import javax.servlet.ServletContext;
-import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -31,13 +26,19 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.kh.spring.board.model.service.BoardReadHistory;
 import com.kh.spring.board.model.service.BoardService;
+import com.kh.spring.board.model.service.BoardTypeRegistry.BoardTypeChangedEvent;
 import com.kh.spring.board.model.vo.Board;
 import com.kh.spring.board.model.vo.BoardExt;
 import com.kh.spring.board.model.vo.BoardImg;
 import com.kh.spring.common.Utils;
 import com.kh.spring.common.model.vo.PageInfo;
+import com.kh.spring.common.template.FileDownload;
 import com.kh.spring.common.template.Pagination;
+import com.kh.spring.common.upload.AttachmentIndex;
+import com.kh.spring.common.upload.UploadPipeline;
+import com.kh.spring.common.upload.UploadPipeline.StagedFile;
 import com.kh.spring.member.model.vo.Member;
 
 import lombok.RequiredArgsConstructor;
@@ -60,6 +61,11 @@ public class BoardController {
 
 	private final BoardService boardService;
 	private final ServletContext application; 
+	private final BoardReadHistory readHistory; // 사용자별 게시글 열람기록
+	private final UploadPipeline uploadPipeline; // 첨부파일 업로드 파이프라인
+	private final AttachmentIndex attachmentIndex; // 첨부파일 인덱스 (회원별 사용량)
+	@Value("${board.upload.userQuota:104857600}")
+	private long userUploadQuota; // 회원별 업로드 용량 (기본 100MB)
 	// ServletContext : application scope를 가진 서블릿 전역에서 사용가능한 객체
 	// 테이블 형태로 저장된 여러 게시판들을 어플리케이션 스코프에 저장해서 header.jsp에 출력하기 위함
 	private final ResourceLoader resourceLoader;
@@ -71,15 +77,17 @@ public class BoardController {
 	 *   => 전부 추상화시켜서 동일한 방법으로 다운로드 할 수 있게 함
 	 */
 	// BoardType 전역객체 설정
-	//  - 어플리케이션 전역에서 사용할 수 있는 BoardType 객체를 추가
-	//  - 서버 가동중에 생성자가 생성된 이후 (자바의 어노테이션) 1회 수행되어 application에 자동으로 등록
-	@PostConstruct // pom.xml에 의존성 추가 필요
-	public void init() {
-		// key=value, BOARD_CODE=BoardType객체 (resultType으로 얻어온 데이터 전체)
-		// N=일반게시판, P=사진게시판
-		Map<String, String> boardTypeMap = boardService.getBoardTypeMap();
-		application.setAttribute("boardTypeMap", boardTypeMap);
-		log.info("boardTypeMap : {}", boardTypeMap);
+	//  - 어플리케이션 전역에서 사용할 수 있는 BoardType 객체는 BoardTypeRegistry가 서버 시작 시 1회 조회하여 application에 등록
+	//  - 게시판 유형이 변경된 경우 관리자가 아래 요청으로 다시 조회 (다른 서버는 BoardTypeRegistry가 버전을 확인하여 다시 조회)
+	private final ApplicationEventPublisher eventPublisher;
+	
+	// 관리자가 아니면 스프링 시큐리티가 권한없음(403) 처리
+	@PreAuthorize("hasRole('ADMIN')")
+	@PostMapping("/type/reload")
+	public String reloadBoardType(RedirectAttributes ra) {
+		eventPublisher.publishEvent(new BoardTypeChangedEvent());
+		ra.addFlashAttribute("alertMsg", "게시판 유형 갱신 완료");
+		return "redirect:/";
 	}
 	
 	// 게시판 목록보기 서비스
@@ -104,6 +112,12 @@ public class BoardController {
 			// currentPage
 			//  - 현재 요청한 페이지 번호 (페이징 처리에 필요한 변수)
 			//  - 기본값은 1로 처리하여, 값을 전달하지 않은 경우 항상 1페이지로 요청하게 처리
+			// 키셋(seek) 페이징 모드
+			//  - mode=keyset 이면 페이지 번호 대신 cursor(기준 글번호)와 direction(next/prev)으로 조회
+			//  - 뒤쪽 페이지도 1페이지와 동일한 비용으로 조회 가능 (COUNT 쿼리도 생략)
+			@RequestParam(value="mode", defaultValue="page") String mode,
+			@RequestParam(value="cursor", defaultValue="0") int cursor,
+			@RequestParam(value="direction", defaultValue="next") String direction,
 			@RequestParam Map<String,Object> paramMap, // 검색기능 추가를 위한 검색 키워드
 			/*
 			 * @RequestParam Map<String,Object>
@@ -129,8 +143,20 @@ public class BoardController {
 		 * 3. 게시글 목록페이지로 게시글정보, 페이징정보, 검색정보를 담아서 forward
 		 */
 		
-		// 1-1. 총 갯수 조회
 		paramMap.put("boardCode", boardCode); // 검색조건 + 게시판 코드
+		
+		// 키셋 페이징 모드인 경우 총 갯수 조회 없이 커서 기준으로 바로 조회
+		// (검색 인덱스 결과는 글번호순이 아닌 점수순이므로 페이지 번호 방식으로 조회)
+		if ("keyset".equals(mode) && !boardService.isIndexedSearch(paramMap)) {
+			PageInfo pi = Pagination.getKeysetPageInfo(cursor, direction, 10);
+			List<Board> list = boardService.selectListKeyset(pi, paramMap);
+			model.addAttribute("list", list);
+			model.addAttribute("pi", pi);
+			model.addAttribute("param", paramMap);
+			return "board/boardListView";
+		}
+		
+		// 1-1. 총 갯수 조회
 		int listCount = boardService.selectListCount(paramMap);
 		
 		// 1-2. 기본파라미터 추가해서 페이징 정보 생성
@@ -196,33 +222,34 @@ public class BoardController {
 		 *   2) 실패 시 에러페이지로 포워딩 (직접 안하고 ControllerAdvice가 처리하게 할 것)
 		 */
 		// 첨부파일 존재여부 체크
+		Member loginUser = (Member) auth.getPrincipal();
+		checkUploadQuota(upfiles, loginUser.getUserNo()); // 회원별 업로드 용량 확인
 		List<BoardImg> imgList = new ArrayList<>();
 		int level = 0; // 첨부파일의 레벨을 의미
 		// 0 : 썸네일, 0이 아닌 값들은 썸네일이 아닌 기타 파일들
-		for (MultipartFile upfile : upfiles) {
-			if(upfile.isEmpty()) {
-				continue;
+		// 첨부파일이 존재한다면 임시폴더에 병렬로 저장 (게시글 등록 트랜잭션이 커밋되면 실제 경로로 이동)
+		// 첨부파일 관리를 위해 DB에 첨부파일의 위치정보를 저장
+		int result;
+		try {
+			for (StagedFile file : uploadPipeline.stage(upfiles, boardCode)) {
+				BoardImg bi = uploadPipeline.newBoardImg(file);
+				bi.setImgLevel(level++);
+				imgList.add(bi); // 연관게시글번호 refBno 값 추가 필요 (게시글 추가가 안되었기 때문에 지금 단계에서는 추가 불가)
 			}
-			// 첨부파일이 존재한다면 web 서버상에 첨부파일 저장
-			// 첨부파일 관리를 위해 DB에 첨부파일의 위치정보를 저장
-			String changeName = Utils.saveFile(upfile, application, boardCode);
-			BoardImg bi = new BoardImg();
-			bi.setChangeName(changeName);
-			bi.setOriginName(upfile.getOriginalFilename());
-			bi.setImgLevel(level++);
-			imgList.add(bi); // 연관게시글번호 refBno 값 추가 필요 (게시글 추가가 안되었기 때문에 지금 단계에서는 추가 불가)
+			// 게시글 등록 서비스 호출
+			//  - 서비스 호출 전, 게시글 정보 바인딩
+			//  - 테이블에 추가하기 위해 필요한 데이터 : 회원번호, 게시판 코드
+			b.setBoardWriter(String.valueOf(loginUser.getUserNo()));
+			b.setBoardCd(boardCode);
+			
+			// 정보체크
+			log.debug("board : {}", b);
+			log.debug("imgList : {}", imgList);
+			result = boardService.insertBoard(b, imgList);
+		} finally {
+			// 서비스가 커밋 처리(commitAfterTransaction)를 등록하기 전에 실패한 경우 임시파일 정리
+			uploadPipeline.release(imgList);
 		}
-		// 게시글 등록 서비스 호출
-		//  - 서비스 호출 전, 게시글 정보 바인딩
-		//  - 테이블에 추가하기 위해 필요한 데이터 : 회원번호, 게시판 코드
-		Member loginUser = (Member) auth.getPrincipal();
-		b.setBoardWriter(String.valueOf(loginUser.getUserNo()));
-		b.setBoardCd(boardCode);
-		
-		// 정보체크
-		log.debug("board : {}", b);
-		log.debug("imgList : {}", imgList);
-		int result = boardService.insertBoard(b, imgList);
 		
 		// 게시글 등록 결과에 따른 페이지 지정
 		if (result == 0) {
@@ -240,13 +267,7 @@ public class BoardController {
 			@PathVariable("boardCode") String boardCode,
 			@PathVariable("boardNo") int boardNo,
 			Authentication auth,
-			Model model,
-			// 사용자의 쿠키 가져오기 (새로고침했을때 조회수증가되는거 방지)
-			// 1. HttpServletRequest의 getCookies() // 모든쿠키배열에서 찾고자하는 쿠키를 검색해야함
-			// 2. Spring의 @CookieValue // Web MVC 모듈에서 더 편한 방법을 제공. argumentResolver가 또 찾아줌
-			@CookieValue(value="readBoardNo", required=false) String readBoardNoCookie,
-			HttpServletRequest req,
-			HttpServletResponse res
+			Model model
 			) {
 		/*
 		 * 업무로직
@@ -272,89 +293,69 @@ public class BoardController {
 		 *    DB에 저장 : 모든 사용자의 게시글 열람 기록을 관리하기에 비효율적
 		 *    쿠키에 저장 : 클라이언트 브라우저에 사용자가 읽은 게시글 번호를 보관(readBoardNo)
 		 *    ex) readBoardNo=11/12/13/14
-		 *    + 쿠키의 유효시간 1시간동안 유지되도록 설정, /spring url에 쿠키를 보관
+		 *    => 읽은 글이 많아질수록 쿠키가 커지고 매 요청마다 전송되는 문제
+		 *    서버 메모리에 저장 : 사용자별 고정크기 블룸필터로 1시간동안 열람여부를 관리 (BoardReadHistory)
 		 */
 		int userNo = ((Member) auth.getPrincipal()).getUserNo();
 		// 이 url 이용하려면 무조건 인증/인가 처리되었을거기 때문에 auth가 null일수가 없음
-		if (userNo != Integer.parseInt(b.getBoardWriter())) {
-			boolean increase = false; // 조회수 증가를 위한 체크변수
-			// readBoardNo라는 이름의 쿠키가 있는지 조사
-			if (readBoardNoCookie == null) {
-				// 첫 조회
-				increase = true;
-				readBoardNoCookie = boardNo + "";
-			} else {
-				// 쿠키가 있는 경우
-				List<String> list = Arrays.asList(readBoardNoCookie.split("/"));
-				// 기존 쿠키값들 중 게시글 번호와 일치하는 값이 하나도 없는 경우
-				if (list.indexOf(boardNo + "") == -1) {
-					increase = true;
-					readBoardNoCookie += "/" + boardNo;
-				}
-			}
-			if (increase) {
-				int result = boardService.increaseCount(boardNo);
-				if (result > 0) {
-					b.setCount(b.getCount() + 1);
-					// 새 쿠키 생성하여 클라이언트에게 전달
-					Cookie newCookie = new Cookie("readBoardNo", readBoardNoCookie);
-					newCookie.setPath(req.getContextPath()); // /spring에서만 사용하는 쿠키
-					newCookie.setMaxAge(1 * 60 * 60); // 1시간
-					res.addCookie(newCookie);
-				}
+		// 열람기록은 쿠키(readBoardNo) 대신 서버의 BoardReadHistory에서 사용자별로 관리 (O(1) 확인, 고정 크기)
+		if (userNo != Integer.parseInt(b.getBoardWriter()) && readHistory.markRead(userNo, boardNo)) {
+			int result = boardService.increaseCount(boardNo);
+			if (result > 0) {
+				b.setCount(b.getCount() + 1);
 			}
 		}
 		model.addAttribute("board", b);
 		return "board/boardDetailView";
 	}
 	
-	// 첨부파일 다운로드
+	// 첨부파일 다운로드 (게시글의 첫번째 첨부파일)
 	@GetMapping("/fileDownload/{boardNo}")
-	// 500 404 등 응답상태 직접 관리할 수 있게 해주는 객체 : ResponseENtity
-	// 내가 담고있는 content type에 대해서도 설정할 수 있음. file 로 설정해서 앵커태그 다운로드처럼 다운되게 할수있음
-	public ResponseEntity<Resource> fileDownload(@PathVariable("boardNo") int boardNo) {
+	public void fileDownload(
+			@PathVariable("boardNo") int boardNo,
+			HttpServletRequest req,
+			HttpServletResponse res
+			) throws IOException {
 		/*
 		 *  업무로직
 		 *  1. 첨부파일 정보 조회(db)
 		 *  2. 첨부파일의 changeName을 바탕으로 "웹서버상"의 첨부파일 로드
-		 *   Resource Loader라는 클래스를 이용. 파일 형태에 상관없이 일관된 방법으로 로딩가능
-		 *  3. 로드한 첨부파일을 ResponseEntity를 통해 사용자에게 반환
+		 *  3. 로드한 첨부파일을 응답 스트림으로 직접 전송 (FileDownload 템플릿)
+		 *   - Range(이어받기), ETag/Last-Modified(304 응답) 지원
 		 */
-		// DB에서 게시글 및 첨부파일 정보 조회
-		BoardExt b = boardService.selectBoard(boardNo); // 필요없는 정보도 모두 가져오기 떄문에 좋은방법은 아님
-		if (b.getImgList().isEmpty()) {
-			return ResponseEntity.notFound().build();
+		BoardImg bi = boardService.selectFirstBoardImg(boardNo); // 게시글 상세 전체가 아닌 첫번째 첨부파일 한 건만 조회
+		if (bi == null) {
+			res.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
 		}
-		
-		// Resource 객체 얻어오기
-		String changeName = b.getImgList().get(0).getChangeName();
-		String realPath = application.getRealPath(changeName);
-		File downFile = new File(realPath);
-		
-		if (!downFile.exists()) {
-			return ResponseEntity.notFound().build();
-			// db상에는 존재하지마 ㄴ웹서버상에서 자원이 삭제되었을 경우
+		sendBoardImg(bi, req, res);
+	}
+	
+	// 첨부파일 번호로 다운로드. 게시글 전체가 아닌 첨부파일 한 건만 조회 (삭제된 게시글의 첨부파일이면 null)
+	@GetMapping("/fileDownload/img/{boardImgNo}")
+	public void fileDownloadByImgNo(
+			@PathVariable("boardImgNo") int boardImgNo,
+			HttpServletRequest req,
+			HttpServletResponse res
+			) throws IOException {
+		BoardImg bi = boardService.selectBoardImg(boardImgNo);
+		if (bi == null) {
+			res.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
 		}
-		
-		// 원래라면 인풋아웃풋 스트림같은거 써야함
-		Resource resource = resourceLoader.getResource("file:"+realPath);
-		
-		// 한글로 된 파일네임 있을수도 있으니까 인코딩 타입 설정
-		String filename = "";
-		try {
-			filename = new String(b.getImgList().get(0).getOriginName().getBytes("utf-8"), "iso-8859-1");
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
+		sendBoardImg(bi, req, res);
+	}
+	
+	private void sendBoardImg(BoardImg bi, HttpServletRequest req, HttpServletResponse res) throws IOException {
+		String realPath = application.getRealPath(bi.getChangeName());
+		File downFile = new File(realPath);
+		if (!downFile.isFile()) {
+			// db상에는 존재하지만 웹서버상에서 자원이 삭제되었을 경우
+			res.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
 		}
-		return ResponseEntity
-			.ok()
-			.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE) 
-			.header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + filename) 
-			.body(resource);
-		// application/octet-stream? 이게 어떤 파일 형식인지는 모르겠지만, 그냥 바이너리 데이터로 취급해줘 라는 의미
-		// 브라우저는 이 타입을 보면 보통 열지 않고 다운로드하도록 처리함 (content-type이 text/html, image/png, application/pdf 등일 경우
-		// 파일을 열어버릴 수 도 있음. 근데 이거는 네가 열지 말고 다운받아야 해 그리고 파일의 이름은 뭐무머야~ 라고 지정하는것)
-		// 브라우저 내부 설정이나 정책을 변경하는건 불가능하고, 대신 브라우저가 이 응답을 처리할 때 어떻게 행동할지를 제안하는 역할
+		// application/octet-stream : 바이너리 데이터로 취급해서 브라우저가 열지 않고 다운로드하도록 처리
+		FileDownload.send(downFile, bi.getOriginName(), req, res);
 	}
 	
 	//실습문제 1. 일반게시판 수정페이지로 이동
@@ -498,13 +499,15 @@ public class BoardController {
             RedirectAttributes ra,
             Model model,
             @RequestParam(value = "upfile", required = false) List<MultipartFile> upfiles,
-            String deleteList , // boardImgNo
+            @RequestParam(value = "deleteList", required = false) List<Integer> deleteList, // 삭제할 boardImgNo 목록 ("3,4" -> [3, 4])
             @RequestParam(value = "imgNo", required = false) List<Integer> imgNoList
 			) {
 		// 다음 업무로직의 순서에 맞춰 코드를 작성
         // 0. 유효성검사(생략)
         // 1. 현재 게시글을 수정할 수 있는 사용자인지 체크.
         // 2. 새롭게 등록한 첨부파일이 있는지 체크 후 저장
+		int userNo = ((Member) authentication.getPrincipal()).getUserNo();
+		checkUploadQuota(upfiles, userNo);
 		List<BoardImg> imgList = new ArrayList<>();
 //		for (int i = 0, j = 0; i < imgNoList.size(); i++) {
 //			if (j >= upfiles.size()) { // upfiles로 꺼낼 값이 없는 경우
@@ -526,27 +529,29 @@ public class BoardController {
 		
 		
 		int level = 0;
-		for (MultipartFile upfile : upfiles) {
-			if(upfile.isEmpty()) {
-				continue;
+		int result;
+		try {
+			// 임시저장된 파일은 모두 먼저 imgList에 담아서 이후 어디서 실패하든 release로 정리되도록 함
+			for (StagedFile file : uploadPipeline.stage(upfiles, boardCode)) {
+				imgList.add(uploadPipeline.newBoardImg(file));
 			}
-			String changeName = Utils.saveFile(upfile, application, boardCode);
-			BoardImg bi = new BoardImg();
-			bi.setBoardImgNo(imgNoList.get(level)); // update, delete 시에는 pk값이 필요함
-			bi.setChangeName(changeName);
-			bi.setOriginName(upfile.getOriginalFilename());
-			bi.setImgLevel(level++);
-			bi.setRefBno(boardNo); // 게시글 번호 추가
-			imgList.add(bi);
+			for (BoardImg bi : imgList) {
+				bi.setBoardImgNo(imgNoList.get(level)); // update, delete 시에는 pk값이 필요함
+				bi.setImgLevel(level++);
+				bi.setRefBno(boardNo); // 게시글 번호 추가
+			}
+			
+			board.setBoardNo(boardNo);
+			board.setBoardCd(boardCode);
+			
+	        // 3. 게시글 , 첨부파일 수정 서비스 요청
+	        //    1) UPDATE에 필요한 데이터를 추가로 바인딩
+			result = boardService.updateBoard(board, deleteList, imgList);
+		} finally {
+			// 서비스가 커밋 처리(commitAfterTransaction)를 등록하기 전에 실패한 경우 임시파일 정리
+			uploadPipeline.release(imgList);
 		}
 		
-		board.setBoardNo(boardNo);
-		board.setBoardCd(boardCode);
-		
-        // 3. 게시글 , 첨부파일 수정 서비스 요청
-        //    1) UPDATE에 필요한 데이터를 추가로 바인딩
-		int result = boardService.updateBoard(board, deleteList, imgList);
-		
         //    서비스 내부 로직
         //    1. 게시글 수정
         //       1) XSS, 개행 처리 후 추가
@@ -566,4 +571,18 @@ public class BoardController {
 		ra.addFlashAttribute("alertMsg","게시글 수정 성공");
 		return "redirect:/board/detail/" + boardCode + "/" + boardNo;
 	}
+	
+	// 회원별 업로드 용량 제한. 첨부파일 인덱스에서 현재 사용량을 바로 조회
+	private void checkUploadQuota(List<MultipartFile> upfiles, int userNo) {
+		if (upfiles == null) {
+			return;
+		}
+		long uploadSize = 0;
+		for (MultipartFile upfile : upfiles) {
+			uploadSize += upfile.getSize();
+		}
+		if (uploadSize > 0 && attachmentIndex.getUserUsage(userNo) + uploadSize > userUploadQuota) {
+			throw new RuntimeException("업로드 가능한 용량을 초과했습니다");
+		}
+	}
 }
@@ -1,8 +1,11 @@
 package com.kh.spring.board.model.dao;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.session.ResultHandler;
+
 import com.kh.spring.board.model.vo.Board;
 import com.kh.spring.board.model.vo.BoardExt;
 import com.kh.spring.board.model.vo.BoardImg;
@@ -14,8 +17,20 @@ public interface BoardDao {
 	int selectListCount(Map<String, Object> paramMap);
 
 	List<Board> selectList(PageInfo pi, Map<String, Object> paramMap);
+	
+	List<Board> selectListByNo(List<Integer> boardNoList);
+	
+	void selectSearchSource(ResultHandler<Board> handler);
+	
+	List<Board> selectSearchChanges(Date since);
+	
+	Date selectCurrentTime();
+
+	List<Board> selectListKeyset(PageInfo pi, Map<String, Object> paramMap);
 
 	List<BoardType> selectBoardTypeList();
+	
+	String selectBoardTypeVersion();
 
 	int insertBoard(Board b);
 
@@ -25,20 +40,38 @@ public interface BoardDao {
 
 	BoardExt selectBoard(int boardNo);
 
+	String selectBoardWriter(int boardNo);
+
 	int increaseCount(int boardNo);
 
+	int addCount(int boardNo, long amount);
+
 	List<BoardImg> selectBoardImgList(int boardNo);
 
 	int updateBoard(Board board);
 
 	int deleteBoardImg(String deleteList);
+	
+	List<BoardImg> selectBoardImgListByNo(int refBno, List<Integer> boardImgNoList);
+	
+	int deleteBoardImgList(int refBno, List<Integer> boardImgNoList);
+	
+	int countBoardImgByChangeName(String changeName);
 
 	int updateBoardImg(BoardImg bi);
+	
+	int updateBoardImgList(List<BoardImg> imgList);
 
 	List<String> selectFileList();
 
-	Map<String, String> getBoardTypeMap();
+	List<String> selectFileListByName(List<String> changeNames);
+
+	List<Map<String, Object>> selectFileOwnerList();
 
 	BoardImg getBoardImg(String changeName);
 
+	BoardImg selectBoardImg(int boardImgNo);
+
+	BoardImg selectFirstBoardImg(int boardNo);
+
 }
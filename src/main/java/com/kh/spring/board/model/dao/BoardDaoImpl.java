@@ -1,9 +1,13 @@
 package com.kh.spring.board.model.dao;
 
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.session.ResultHandler;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -23,20 +27,6 @@ public class BoardDaoImpl implements BoardDao{
 	
 	private final SqlSessionTemplate session; // 생성자방식 의존성 주입
 
-	// BoardType 전역객체 설정. BOARD_CODE=BoardType객체 (resultType으로 얻어온 데이터 전체)
-	@Override
-	public Map<String, String> getBoardTypeMap() {
-		/*
-		 * selectMap
-		 *  - Map<Key,value> 형태의 데이터를 반환하는 메서드
-		 *  - 두번째 매개변수로는 어떤 '컬럼'을 key로 사용할지를 작성
-		 *  - SELECT key, value FROM TABLE
-		 *  BOARD_CD인데 alias 설정해줄것. 항상 동일해야 함
-		 *  key 값에 대해 getter 함수 호출하는데 BoardType 클래스 필드명이 boardCd이기 떄문
-		 */
-		return session.selectMap("board.getBoardTypeMap", "boardCd");
-	}
-	
 	// 게시글의 총 갯수 조회 (검색 결과, 보드 타입에 따라서)
 	@Override
 	public int selectListCount(Map<String, Object> paramMap) {
@@ -88,15 +78,71 @@ public class BoardDaoImpl implements BoardDao{
 //		return session.selectList("board.selectList", paramMap, rowBounds);
 		
 		// 3번 방법으로 조회하기
+		// 사진게시판 썸네일 : LEFT JOIN BOARD_IMG ON (REF_BNO = TO_CHAR(BOARD_NO) AND IMG_LEVEL = 0 AND BOARD_CD = 'P'), CHANGE_NAME AS THUMBNAIL
+		// 썸네일은 사진게시판 이미지만 생성하므로 일반게시판의 첨부파일(pdf, zip 등)은 조인하지 않음
 		paramMap.put("offset", offset);
 		paramMap.put("limit", limit);
 		return session.selectList("board.selectList", paramMap);
 	}
+	
+	// 키셋(seek) 방식으로 페이징 처리된 게시글 조회
+	@Override
+	public List<Board> selectListKeyset(PageInfo pi, Map<String, Object> paramMap) {
+		/*
+		 * OFFSET 방식은 뒤쪽 페이지로 갈수록 앞의 (offset)개 행을 읽고 버려야 하기 때문에 느려짐
+		 * 키셋 방식은 마지막으로 본 글번호(PK 인덱스)를 기준으로 바로 탐색하므로 몇 페이지든 비용이 동일
+		 *  - next : WHERE BOARD_NO < #{cursor} ORDER BY BOARD_NO DESC
+		 *  - prev : WHERE BOARD_NO > #{cursor} ORDER BY BOARD_NO ASC (서비스에서 다시 뒤집음)
+		 *  - cursor가 0이면 조건 없이 첫 페이지
+		 *  FETCH FIRST #{limit} ROWS ONLY
+		 * 다음 페이지 존재여부를 COUNT 없이 알기 위해 limit보다 1개 더 조회
+		 * 썸네일은 selectList와 같이 사진게시판의 IMG_LEVEL 0 이미지를 LEFT JOIN (CHANGE_NAME AS THUMBNAIL)
+		 */
+		paramMap.put("cursor", pi.getCursor());
+		paramMap.put("direction", pi.getDirection());
+		paramMap.put("limit", pi.getBoardLimit() + 1);
+		return session.selectList("board.selectListKeyset", paramMap);
+	}
+
+	// 검색 인덱스 결과(게시글번호 목록)로 게시글 조회. 순서는 서비스에서 검색 점수순으로 다시 정렬
+	// selectList와 같은 컬럼 + BOARD_CONTENT, WHERE STATUS = 'Y' AND BOARD_NO IN (<foreach collection="list">)
+	@Override
+	public List<Board> selectListByNo(List<Integer> boardNoList) {
+		return session.selectList("board.selectListByNo", boardNoList);
+	}
+	
+	// 검색 인덱스 생성용 전체 게시글 조회. 결과를 List로 모으지 않고 한 행씩 handler에 전달
+	// 색인 목록은 번호순으로 뒤에 붙이기만 하면 되도록 번호순으로 조회 (정렬하지 않으면 매번 목록을 다시 만듦)
+	// SELECT BOARD_NO, BOARD_TITLE, BOARD_CONTENT, BOARD_CD FROM BOARD WHERE STATUS = 'Y' ORDER BY BOARD_NO
+	@Override
+	public void selectSearchSource(ResultHandler<Board> handler) {
+		session.select("board.selectSearchSource", handler);
+	}
+	
+	// 검색 인덱스 동기화용. since 이후에 등록/수정/삭제된 게시글 (삭제된 게시글은 색인에서 제거하도록 STATUS도 조회)
+	// SELECT BOARD_NO, BOARD_TITLE, BOARD_CONTENT, BOARD_CD, STATUS FROM BOARD WHERE MODIFY_DATE > #{since} ORDER BY MODIFY_DATE
+	@Override
+	public List<Board> selectSearchChanges(Date since) {
+		return session.selectList("board.selectSearchChanges", since);
+	}
+	
+	// 서버마다 시계가 다를 수 있으므로 MODIFY_DATE와 비교할 시각은 DB에서 조회 (SELECT SYSTIMESTAMP FROM DUAL)
+	@Override
+	public Date selectCurrentTime() {
+		return session.selectOne("board.selectCurrentTime");
+	}
 
 	@Override
 	public List<BoardType> selectBoardTypeList() {
 		return session.selectList("board.selectBoardTypeList");
 	}
+	
+	// 게시판 유형 변경 확인용 버전 (행 수 + 내용 해시). 목록 전체를 비교하지 않고 한 줄만 조회
+	// SELECT COUNT(*) || ':' || SUM(ORA_HASH(BOARD_CD || ':' || BOARD_NAME)) FROM BOARD_TYPE
+	@Override
+	public String selectBoardTypeVersion() {
+		return session.selectOne("board.selectBoardTypeVersion");
+	}
 
 	@Override
 	public int insertBoard(Board b) {
@@ -115,17 +161,34 @@ public class BoardDaoImpl implements BoardDao{
 	public BoardExt selectBoard(int boardNo) {
 		return session.selectOne("board.selectBoard", boardNo);
 	}
+	
+	// 작성자 확인용. 이미지 조인 없이 PK 인덱스로 작성자 번호만 조회
+	// SELECT BOARD_WRITER FROM BOARD WHERE BOARD_NO = #{boardNo} AND STATUS = 'Y'
+	@Override
+	public String selectBoardWriter(int boardNo) {
+		return session.selectOne("board.selectBoardWriter", boardNo);
+	}
 
 	@Override
 	public int increaseCount(int boardNo) {
 		return session.update("board.increaseCount", boardNo);
 	}
+	
+	// 누적된 조회수를 한번에 반영 (UPDATE BOARD SET COUNT = COUNT + #{amount} WHERE BOARD_NO = #{boardNo})
+	@Override
+	public int addCount(int boardNo, long amount) {
+		Map<String, Object> param = new HashMap<>();
+		param.put("boardNo", boardNo);
+		param.put("amount", amount);
+		return session.update("board.addCount", param);
+	}
 
 	@Override
 	public List<BoardImg> selectBoardImgList(int boardNo) {
 		return null;
 	}
 
+	// 다른 서버의 검색 인덱스가 수정된 게시글을 찾을 수 있도록 MODIFY_DATE = SYSTIMESTAMP 도 함께 변경
 	@Override
 	public int updateBoard(Board board) {
 		return session.update("board.updateBoard", board);
@@ -135,6 +198,33 @@ public class BoardDaoImpl implements BoardDao{
 	public int deleteBoardImg(String deleteList) {
 		return session.delete("board.deleteBoardImg", deleteList);
 	}
+	
+	// 삭제할 첨부파일 조회. 다른 게시글의 첨부파일 번호는 조회되지 않음
+	// SELECT * FROM BOARD_IMG WHERE REF_BNO = #{refBno} AND BOARD_IMG_NO IN (<foreach collection="boardImgNoList">)
+	@Override
+	public List<BoardImg> selectBoardImgListByNo(int refBno, List<Integer> boardImgNoList) {
+		return session.selectList("board.selectBoardImgListByNo", imgNoParam(refBno, boardImgNoList));
+	}
+	
+	// DELETE FROM BOARD_IMG WHERE REF_BNO = #{refBno} AND BOARD_IMG_NO IN (<foreach collection="boardImgNoList">)
+	@Override
+	public int deleteBoardImgList(int refBno, List<Integer> boardImgNoList) {
+		return session.delete("board.deleteBoardImgList", imgNoParam(refBno, boardImgNoList));
+	}
+	
+	private Map<String, Object> imgNoParam(int refBno, List<Integer> boardImgNoList) {
+		Map<String, Object> param = new HashMap<>();
+		param.put("refBno", String.valueOf(refBno)); // REF_BNO 컬럼이 VARCHAR2
+		param.put("boardImgNoList", boardImgNoList);
+		return param;
+	}
+	
+	// 같은 내용의 파일은 여러 게시글이 공유하므로 실제 파일 삭제 전 참조 수 확인
+	// SELECT COUNT(*) FROM BOARD_IMG WHERE CHANGE_NAME = #{changeName}
+	@Override
+	public int countBoardImgByChangeName(String changeName) {
+		return session.selectOne("board.countBoardImgByChangeName", changeName);
+	}
 
 	@Override
 	public int updateBoardImg(BoardImg bi) {
@@ -145,14 +235,70 @@ public class BoardDaoImpl implements BoardDao{
 	public int insertBoardImg(BoardImg bi) {
 		return session.insert("board.insertBoardImg", bi);
 	}
+	
+	/*
+	 * 첨부파일 일괄 수정 (MERGE 한 문장으로 처리 => updateBoardImg를 첨부파일 수만큼 호출하지 않음)
+	 *  - 다른 게시글의 첨부파일 번호가 넘어온 경우 수정되지 않도록 게시글 번호도 함께 확인
+	 *  - 반환값 : 수정된 행 수 (imgList 크기와 다르면 수정되지 않은 첨부파일이 있음)
+	 * MERGE INTO BOARD_IMG B
+	 * USING (
+	 *     <foreach collection="list" item="bi" separator="UNION ALL">
+	 *     SELECT #{bi.boardImgNo} BOARD_IMG_NO, #{bi.refBno} REF_BNO, #{bi.originName} ORIGIN_NAME, #{bi.changeName} CHANGE_NAME FROM DUAL
+	 *     </foreach>
+	 * ) I
+	 * ON (B.BOARD_IMG_NO = I.BOARD_IMG_NO AND B.REF_BNO = I.REF_BNO)
+	 * WHEN MATCHED THEN UPDATE SET B.ORIGIN_NAME = I.ORIGIN_NAME, B.CHANGE_NAME = I.CHANGE_NAME
+	 */
+	@Override
+	public int updateBoardImgList(List<BoardImg> imgList) {
+		return session.update("board.updateBoardImgList", imgList);
+	}
 
 	@Override
 	public List<String> selectFileList() {
 		return session.selectList("board.selectFileList");
 	}
+	
+	// 전달한 경로 중 DB에 등록된 경로만 조회 (증분 파일 정리용). IN 목록은 1000개까지만 가능하므로 나눠서 조회
+	// SELECT DISTINCT CHANGE_NAME FROM BOARD_IMG WHERE CHANGE_NAME IN (<foreach collection="list">)
+	@Override
+	public List<String> selectFileListByName(List<String> changeNames) {
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < changeNames.size(); i += 1000) {
+			result.addAll(session.selectList("board.selectFileListByName",
+					changeNames.subList(i, Math.min(i + 1000, changeNames.size()))));
+		}
+		return result;
+	}
+	
+	// 첨부파일별, 작성자별 참조 수 (회원별 사용량 계산용)
+	// SELECT CHANGE_NAME, BOARD_WRITER, COUNT(*) REF_COUNT FROM BOARD_IMG JOIN BOARD ON (REF_BNO = BOARD_NO) GROUP BY CHANGE_NAME, BOARD_WRITER
+	@Override
+	public List<Map<String, Object>> selectFileOwnerList() {
+		return session.selectList("board.selectFileOwnerList");
+	}
 
 	@Override
 	public BoardImg getBoardImg(String changeName) {
 		return session.selectOne("board.getBoardImg", changeName);
 	}
+	
+	// 첨부파일 다운로드용. 게시글 상세 조회 없이 첨부파일 번호로 한 건만 조회 (삭제된 게시글의 첨부파일은 제외)
+	// SELECT I.* FROM BOARD_IMG I JOIN BOARD B ON (I.REF_BNO = TO_CHAR(B.BOARD_NO))
+	// WHERE I.BOARD_IMG_NO = #{boardImgNo} AND B.STATUS = 'Y'
+	@Override
+	public BoardImg selectBoardImg(int boardImgNo) {
+		return session.selectOne("board.selectBoardImg", boardImgNo);
+	}
+	
+	// 게시글의 첫번째 첨부파일 한 건만 조회 (상세 조회의 imgList 순서와 같음, 삭제된 게시글이면 null)
+	// SELECT * FROM (
+	//     SELECT I.* FROM BOARD_IMG I JOIN BOARD B ON (I.REF_BNO = TO_CHAR(B.BOARD_NO))
+	//     WHERE B.BOARD_NO = #{boardNo} AND B.STATUS = 'Y'
+	//     ORDER BY I.IMG_LEVEL, I.BOARD_IMG_NO
+	// ) WHERE ROWNUM = 1
+	@Override
+	public BoardImg selectFirstBoardImg(int boardNo) {
+		return session.selectOne("board.selectFirstBoardImg", boardNo);
+	}
 }
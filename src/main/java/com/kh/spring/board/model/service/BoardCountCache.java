@@ -0,0 +1,166 @@
+package com.kh.spring.board.model.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 게시글 목록 총 갯수 캐시
+ *  - 목록 조회마다 COUNT(*) 쿼리를 수행하지 않도록 게시판코드 + 검색조건 단위로 총 갯수를 보관
+ *  - 게시글 등록 시 : 검색조건이 없는 카운트는 +1, 검색조건이 있는 카운트는 제거(일치여부를 알 수 없음)
+ *  - 게시글 수정 시 : 제목/내용이 바뀌어 검색결과가 달라질 수 있으므로 검색조건이 있는 카운트만 제거
+ *  - 근사치 모드 : 결과가 아주 많은(APPROXIMATE_THRESHOLD 이상) 카운트는 정확할 필요가 없으므로
+ *    수정으로 인한 제거 대상에서 제외하고 더 긴 시간동안 재사용한다
+ *  - 등록/수정 반영은 트랜잭션이 커밋된 후에 처리 (롤백되면 카운트를 바꾸지 않음)
+ *  - 검색어가 키에 포함되므로 LRU로 최대 MAX_SIZE개만 보관하고, 만료된 카운트는 주기적으로 제거
+ */
+@Slf4j
+@Component
+public class BoardCountCache {
+
+	private static final long TTL = 60 * 1000; // 정확한 카운트의 유지시간 (1분)
+	private static final long APPROXIMATE_TTL = 10 * 60 * 1000; // 근사치 카운트의 유지시간 (10분)
+	private static final int APPROXIMATE_THRESHOLD = 10000; // 근사치로 취급할 최소 갯수
+	private static final int MAX_SIZE = 1000; // 최대 보관 카운트 수
+
+	@Value("${board.count.approximate:true}")
+	private boolean approximate; // 근사치 모드 사용여부 (기본 사용)
+
+	// accessOrder=true : 오래 사용하지 않은 검색조건부터 제거 (LRU)
+	private final Map<String, CountEntry> cache = new LinkedHashMap<String, CountEntry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CountEntry> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+	private long version; // 등록/수정이 반영될 때마다 증가 (cache 락으로 보호)
+
+	private static class CountEntry {
+		private final String boardCode;
+		private final boolean filtered; // 검색조건 포함 여부
+		private final AtomicInteger count;
+		private final long loadedAt;
+
+		private CountEntry(String boardCode, boolean filtered, int count) {
+			this.boardCode = boardCode;
+			this.filtered = filtered;
+			this.count = new AtomicInteger(count);
+			this.loadedAt = System.currentTimeMillis();
+		}
+	}
+
+	// 캐시된 카운트를 반환하고, 없거나 만료되었다면 loader(COUNT 쿼리)로 조회 후 보관
+	public int get(Map<String, Object> paramMap, ToIntFunction<Map<String, Object>> loader) {
+		String key = key(paramMap);
+		long loadVersion;
+		synchronized (cache) {
+			CountEntry entry = cache.get(key);
+			if (entry != null && !isExpired(entry)) {
+				return entry.count.get();
+			}
+			loadVersion = version;
+		}
+		int count = loader.applyAsInt(paramMap);
+		synchronized (cache) {
+			// 조회하는 동안 등록/수정이 반영되었다면 조회 결과가 맞는지 알 수 없으므로 보관하지 않음
+			if (version == loadVersion) {
+				cache.put(key, new CountEntry(String.valueOf(paramMap.get("boardCode")), isFiltered(paramMap), count));
+				log.debug("게시글 갯수 캐시 갱신 - {} : {}", key, count);
+			}
+		}
+		return count;
+	}
+
+	// 게시글 등록 후 호출 (트랜잭션이 커밋되면 반영)
+	public void onInsert(String boardCode) {
+		afterCommit(() -> {
+			synchronized (cache) {
+				version++;
+				Iterator<Map.Entry<String, CountEntry>> it = cache.entrySet().iterator();
+				while (it.hasNext()) {
+					CountEntry entry = it.next().getValue();
+					if (!entry.boardCode.equals(boardCode)) {
+						continue;
+					}
+					if (!entry.filtered) {
+						entry.count.incrementAndGet();
+					} else if (!isApproximate(entry)) {
+						it.remove(); // 근사치 카운트는 만료시까지 유지
+					}
+				}
+			}
+		});
+	}
+
+	// 게시글 수정 후 호출 (트랜잭션이 커밋되면 반영)
+	public void onUpdate(String boardCode) {
+		afterCommit(() -> {
+			synchronized (cache) {
+				version++;
+				cache.values().removeIf(entry ->
+						entry.boardCode.equals(boardCode) && entry.filtered && !isApproximate(entry));
+			}
+		});
+	}
+
+	private void afterCommit(Runnable task) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			task.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				task.run();
+			}
+		});
+	}
+
+	// 만료된 카운트 제거 (같은 검색어로 다시 조회되지 않으면 남아있으므로 주기적으로 정리)
+	@Scheduled(fixedDelay = 60 * 1000)
+	public void purgeExpired() {
+		synchronized (cache) {
+			cache.values().removeIf(this::isExpired);
+		}
+	}
+
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	private boolean isApproximate(CountEntry entry) {
+		return approximate && entry.count.get() >= APPROXIMATE_THRESHOLD;
+	}
+
+	private boolean isExpired(CountEntry entry) {
+		long ttl = isApproximate(entry) ? APPROXIMATE_TTL : TTL;
+		return System.currentTimeMillis() - entry.loadedAt > ttl;
+	}
+
+	private boolean isFiltered(Map<String, Object> paramMap) {
+		Object keyword = paramMap.get("keyword");
+		return keyword != null && !keyword.toString().isEmpty();
+	}
+
+	// 게시판코드 + 검색조건 + 검색어 (currentPage 등 페이징 파라미터는 제외)
+	private String key(Map<String, Object> paramMap) {
+		if (!isFiltered(paramMap)) {
+			return paramMap.get("boardCode") + "|";
+		}
+		return paramMap.get("boardCode") + "|" + paramMap.get("condition") + "|" + paramMap.get("keyword");
+	}
+}
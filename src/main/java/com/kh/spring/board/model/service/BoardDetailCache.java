@@ -0,0 +1,146 @@
+package com.kh.spring.board.model.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.kh.spring.board.model.vo.BoardExt;
+
+/*
+ * 게시글 상세정보(BoardExt) 캐시
+ *  - 상세보기, 첨부파일 다운로드, 수정폼, 수정처리, 작성자 확인 인터셉터가 모두 selectBoard를 호출하므로
+ *    수정 한 번에 이미지 조인 쿼리가 여러번 수행되던 문제를 해결
+ *  - LRU(최근에 사용하지 않은 순으로 제거) + TTL(만료시간) 방식으로 크기를 제한
+ *  - 게시글/첨부파일 변경 시 해당 게시글번호만 정확하게 제거(evict)
+ *    트랜잭션 안에서 변경한 경우 커밋된 후에 제거 (커밋 전에 제거하면 다른 요청이 변경 전 데이터를 다시 캐시함)
+ *  - 조회(miss) 도중 제거가 일어난 경우 조회 결과를 보관하지 않음 (version으로 확인)
+ *  - 호출한 쪽에서 BoardExt를 수정(개행처리, 조회수 등)하기 때문에 항상 복사본을 반환한다
+ */
+@Component
+public class BoardDetailCache {
+
+	private static final int MAX_SIZE = 500; // 최대 보관 게시글 수
+	private static final long TTL = 5 * 60 * 1000; // 만료시간 (5분)
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final AtomicLong version = new AtomicLong(); // evict 할 때마다 증가
+
+	private static class CacheEntry {
+		private final BoardExt board;
+		private final long loadedAt;
+
+		private CacheEntry(BoardExt board) {
+			this.board = board;
+			this.loadedAt = System.currentTimeMillis();
+		}
+	}
+
+	// accessOrder=true 로 생성하면 get할 때마다 순서가 갱신되어 LRU로 동작
+	private final Map<Integer, CacheEntry> cache = new LinkedHashMap<Integer, CacheEntry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, CacheEntry> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	// 캐시에 있으면 복사본 반환, 없으면 loader로 조회 후 보관 (read-through)
+	public BoardExt get(int boardNo, IntFunction<BoardExt> loader) {
+		synchronized (cache) {
+			CacheEntry entry = cache.get(boardNo);
+			if (entry != null && System.currentTimeMillis() - entry.loadedAt <= TTL) {
+				hits.increment();
+				return copy(entry.board);
+			}
+		}
+		misses.increment();
+		long loadVersion = version.get();
+		BoardExt board = loader.apply(boardNo);
+		if (board != null) {
+			synchronized (cache) {
+				// 조회하는 동안 제거된 게시글이 있으면 조회 결과가 이미 오래된 값일 수 있으므로 보관하지 않음
+				if (version.get() == loadVersion) {
+					cache.put(boardNo, new CacheEntry(copy(board)));
+				}
+			}
+		}
+		return board;
+	}
+
+	public void evict(int boardNo) {
+		synchronized (cache) {
+			cache.remove(boardNo);
+			version.incrementAndGet();
+		}
+	}
+
+	// 현재 트랜잭션이 커밋되면 제거 (트랜잭션이 없으면 바로 제거)
+	public void evictAfterCommit(int boardNo) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			evict(boardNo);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				evict(boardNo);
+			}
+		});
+	}
+
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public double getHitRatio() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BoardDetailCache[size=%d, hit=%d, miss=%d, hitRatio=%.2f]",
+				size(), getHitCount(), getMissCount(), getHitRatio());
+	}
+
+	private BoardExt copy(BoardExt source) {
+		BoardExt b = new BoardExt();
+		b.setBoardNo(source.getBoardNo());
+		b.setBoardTitle(source.getBoardTitle());
+		b.setBoardContent(source.getBoardContent());
+		b.setBoardCd(source.getBoardCd());
+		b.setBoardWriter(source.getBoardWriter());
+		b.setCount(source.getCount());
+		b.setCreateDate(source.getCreateDate());
+		b.setStatus(source.getStatus());
+		b.setUserName(source.getUserName());
+		b.setImgList(source.getImgList() == null ? null : new ArrayList<>(source.getImgList()));
+		return b;
+	}
+}
@@ -0,0 +1,95 @@
+package com.kh.spring.board.model.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * 사용자별 게시글 열람기록 (조회수 중복 증가 방지용)
+ *  - 기존 readBoardNo 쿠키 방식은 읽은 글번호가 늘어날수록 쿠키가 커지고, 매 요청마다 전송되며,
+ *    확인할 때마다 split + indexOf 선형탐색이 필요했음
+ *  - 서버 메모리에 사용자별로 고정 크기의 블룸필터를 두어 O(1)로 열람여부를 확인
+ *  - 블룸필터를 두 세대(current, previous)로 나누고 WINDOW 마다 교체 => 약 1시간동안 중복 조회를 막아줌
+ *    (쿠키 유효시간 1시간과 동일한 효과)
+ *  - 블룸필터 특성상 드물게 처음 읽는 글을 읽은 글로 판단할 수 있음(조회수가 1 덜 오르는 정도라 허용)
+ */
+@Component
+public class BoardReadHistory {
+
+	private static final long WINDOW = 30 * 60 * 1000; // 세대 교체 주기 (30분, 두 세대 합쳐 최대 1시간)
+	private static final int BITS = 2048; // 사용자당 세대별 비트 수 (256바이트)
+	private static final int HASHES = 3; // 해시 함수 갯수
+
+	// key : 회원번호
+	private final Map<Integer, ReadFilter> filters = new ConcurrentHashMap<>();
+
+	private static class ReadFilter {
+		private long[] current = new long[BITS / 64];
+		private long[] previous = new long[BITS / 64];
+		private long rotatedAt = System.currentTimeMillis();
+
+		// 처음 읽는 글이면 기록 후 true 반환
+		private synchronized boolean markRead(int boardNo, long now) {
+			rotate(now);
+			if (contains(current, boardNo) || contains(previous, boardNo)) {
+				return false;
+			}
+			for (int i = 0; i < HASHES; i++) {
+				int bit = index(boardNo, i);
+				current[bit >>> 6] |= 1L << bit;
+			}
+			return true;
+		}
+
+		private void rotate(long now) {
+			long elapsed = now - rotatedAt;
+			if (elapsed < WINDOW) {
+				return;
+			}
+			// 두 세대 이상 지났으면 모두 비움
+			previous = elapsed < WINDOW * 2 ? current : new long[BITS / 64];
+			current = new long[BITS / 64];
+			rotatedAt = now;
+		}
+
+		private synchronized boolean isExpired(long now) {
+			return now - rotatedAt >= WINDOW * 2;
+		}
+
+		private static boolean contains(long[] bits, int boardNo) {
+			for (int i = 0; i < HASHES; i++) {
+				int bit = index(boardNo, i);
+				if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// 글번호를 섞어서(murmur3 finalizer) 해시 함수별 비트 위치 계산
+		private static int index(int boardNo, int seed) {
+			int h = boardNo * 0x9E3779B9 + seed * 0x85EBCA6B;
+			h ^= h >>> 16;
+			h *= 0x85EBCA6B;
+			h ^= h >>> 13;
+			h *= 0xC2B2AE35;
+			h ^= h >>> 16;
+			return h & (BITS - 1);
+		}
+	}
+
+	// 처음 읽는 게시글이라면 열람기록에 추가하고 true 반환 (조회수 증가 대상)
+	public boolean markRead(int userNo, int boardNo) {
+		return filters.computeIfAbsent(userNo, k -> new ReadFilter())
+				.markRead(boardNo, System.currentTimeMillis());
+	}
+
+	// 1시간 이상 게시글을 읽지 않은 사용자의 기록은 제거
+	@Scheduled(fixedDelay = 10 * 60 * 1000)
+	public void evictExpired() {
+		long now = System.currentTimeMillis();
+		filters.entrySet().removeIf(e -> e.getValue().isExpired(now));
+	}
+}
@@ -0,0 +1,932 @@
+package com.kh.spring.board.model.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.kh.spring.board.model.dao.BoardDao;
+import com.kh.spring.board.model.vo.Board;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 게시글 제목/내용 검색 인덱스 (역색인)
+ *  - 제목/내용 검색을 LIKE '%keyword%'로 처리하면 인덱스를 탈 수 없어 게시글이 늘어날수록 검색이 느려짐
+ *  - 서버 시작 시 게시글 전체를 한 번 읽어 단어(term) -> (게시글번호, 등장횟수) 목록을 메모리에 구성
+ *    한글은 2글자 단위(bigram)로 색인하므로 "%keyword%" 같은 부분 일치 검색도 색인 조회로 처리
+ *    bigram마다 등장 위치를 함께 저장하여 검색어의 bigram이 연속으로 나오는 게시글만 찾음 ("게시판" != "게시 ... 시판")
+ *    영문/숫자는 단어 단위로 색인하고, 검색 시 검색어를 포함하는 단어를 모두 찾아서 부분 일치 검색을 유지 ("ring" -> spring)
+ *    검색어를 포함하는 단어는 정렬된 접미사 목록(SuffixIndex)의 범위 조회로 찾음 (단어 목록 전체를 확인하지 않음)
+ *  - 이후에는 게시글 등록/수정 트랜잭션이 커밋될 때 해당 게시글만 다시 색인
+ *    다른 서버에서 등록/수정된 게시글은 주기적으로 MODIFY_DATE가 마지막 확인 시각 이후인 게시글만 조회하여 색인 (sync)
+ *    마지막 확인이 STALE_AFTER 이상 지나면(DB 장애 등) 색인이 최신이 아니므로 DB 검색 사용
+ *    바뀌는 단어의 목록은 쓰기 락 밖에서 단어당 한 번만 새로 만들고, 쓰기 락은 목록을 교체할 때만 잡음
+ *  - 검색 : 모든 검색어를 포함하는 게시글을 BM25 점수(제목 가중치 포함) 순으로 정렬 후 요청한 페이지만 반환
+ *    목록 화면은 갯수(count)와 목록(search)을 연달아 요청하므로 정렬된 결과를 색인 버전별로 잠시 보관하여 한 번만 계산
+ *  - 하이라이트 : 제목의 검색어를 <mark>로 감싸고, 내용에서 검색어 주변 일부를 미리보기(snippet)로 생성
+ *  - 색인이 끝나기 전이나 작성자 검색은 기존 방식(DB 조회)으로 처리
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BoardSearchIndex {
+
+	private static final double K1 = 1.2; // BM25 등장횟수 포화 계수
+	private static final double B = 0.75; // BM25 문서길이 보정 계수
+	private static final int TITLE_WEIGHT = 3; // 제목에 포함된 단어는 내용보다 3배 가중치
+	private static final int SNIPPET_BEFORE = 30; // 미리보기에서 검색어 앞쪽으로 보여줄 글자 수
+	private static final int SNIPPET_LENGTH = 100;
+	private static final int MAX_RANKINGS = 64; // 보관할 검색결과 수
+	private static final long SYNC_OVERLAP = 60 * 1000; // 확인 시각보다 늦게 커밋된 트랜잭션을 놓치지 않도록 겹쳐서 조회하는 구간
+	private static final long STALE_AFTER = 30 * 1000; // 마지막 확인 후 이 시간이 지나면 DB 검색 사용
+
+	private final BoardDao boardDao;
+
+	private static class Doc {
+		private final String boardCd;
+		private final int length; // 제목 가중치를 포함한 단어 수
+		private final int signature; // 게시판, 제목, 내용의 해시값 (같은 내용을 다시 색인하지 않도록)
+		private final String[] titleTerms;
+		private final String[] contentTerms;
+
+		private Doc(String boardCd, int length, int signature, String[] titleTerms, String[] contentTerms) {
+			this.boardCd = boardCd;
+			this.length = length;
+			this.signature = signature;
+			this.titleTerms = titleTerms;
+			this.contentTerms = contentTerms;
+		}
+	}
+
+	/*
+	 * 단어별 게시글 목록 (postings)
+	 *  - 게시글번호 오름차순으로 (이전 번호와의 차이, 등장횟수, 등장위치들) 을 가변길이 정수(varint)로 압축하여 byte 배열에 저장
+	 *    ex) 게시글 1000, 1003, 1010 => 1000, 3, 7 : 차이값은 대부분 작으므로 1바이트로 저장됨
+	 *    등장위치도 이전 위치와의 차이로 저장 ex) 3, 10, 12 => 3, 7, 2
+	 *  - 새 게시글은 번호가 가장 크므로 뒤에 붙이기만 하면 됨(append). 수정/삭제 시에는 새 목록을 만들어서 교체(with, without)
+	 *  - 읽기는 Cursor로 앞에서부터 차례로 읽음 (값마다 배열을 만들지 않음)
+	 */
+	static class Postings {
+		private byte[] data = new byte[8];
+		private int length; // 사용중인 바이트 수
+		private int size; // 게시글 수
+		private int last; // 마지막 게시글번호
+
+		// boardNo가 last보다 커야 함. positions : 오름차순 등장위치
+		void append(int boardNo, int[] positions) {
+			write(boardNo - last);
+			write(positions.length);
+			int previous = 0;
+			for (int position : positions) {
+				write(position - previous);
+				previous = position;
+			}
+			last = boardNo;
+			size++;
+		}
+
+		// boardNo의 등장위치를 추가/교체한 새 목록
+		Postings with(int boardNo, int[] positions) {
+			Postings rebuilt = new Postings();
+			boolean added = false;
+			Cursor cursor = cursor();
+			while (cursor.next()) {
+				if (!added && cursor.boardNo >= boardNo) {
+					rebuilt.append(boardNo, positions);
+					added = true;
+					if (cursor.boardNo == boardNo) {
+						continue;
+					}
+				}
+				rebuilt.append(cursor.boardNo, cursor.positions());
+			}
+			if (!added) {
+				rebuilt.append(boardNo, positions);
+			}
+			return rebuilt;
+		}
+
+		// boardNo를 제외한 새 목록. 남은 게시글이 없으면 null
+		Postings without(int boardNo) {
+			Postings rebuilt = new Postings();
+			Cursor cursor = cursor();
+			while (cursor.next()) {
+				if (cursor.boardNo != boardNo) {
+					rebuilt.append(cursor.boardNo, cursor.positions());
+				}
+			}
+			return rebuilt.size == 0 ? null : rebuilt;
+		}
+
+		// {게시글번호 배열, 등장횟수 배열}
+		int[][] decode() {
+			int[] docs = new int[size];
+			int[] tfs = new int[size];
+			Cursor cursor = cursor();
+			for (int i = 0; cursor.next(); i++) {
+				docs[i] = cursor.boardNo;
+				tfs[i] = cursor.tf;
+			}
+			return new int[][] {docs, tfs};
+		}
+
+		Cursor cursor() {
+			return new Cursor(this);
+		}
+
+		int size() {
+			return size;
+		}
+
+		private void write(int value) {
+			if (length + 5 > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			while ((value & ~0x7F) != 0) {
+				data[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data[length++] = (byte) value;
+		}
+	}
+
+	// Postings를 앞에서부터 읽는 커서. 읽는 위치(pos)를 필드로 두고 varint를 제자리에서 해석
+	static class Cursor {
+		private final Postings postings;
+		private int pos; // 다음에 읽을 바이트 위치
+		private int count; // 읽은 게시글 수
+		private int boardNo;
+		private int tf;
+		private int unread; // 현재 게시글에서 읽지 않은 등장위치 수
+
+		private Cursor(Postings postings) {
+			this.postings = postings;
+		}
+
+		// 다음 게시글로 이동. 읽지 않은 등장위치는 건너뜀
+		boolean next() {
+			for (; unread > 0; unread--) {
+				skip();
+			}
+			if (count == postings.size) {
+				return false;
+			}
+			boardNo += read();
+			tf = read();
+			unread = tf;
+			count++;
+			return true;
+		}
+
+		// target 이상인 게시글로 이동
+		boolean advance(int target) {
+			while (count == 0 || boardNo < target) {
+				if (!next()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// 현재 게시글의 등장위치 (게시글마다 한 번만 호출)
+		int[] positions() {
+			int[] positions = new int[unread];
+			int position = 0;
+			for (int i = 0; i < positions.length; i++) {
+				position += read();
+				positions[i] = position;
+			}
+			unread = 0;
+			return positions;
+		}
+
+		private int read() {
+			byte[] data = postings.data;
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		private void skip() {
+			while ((postings.data[pos++] & 0x80) != 0) {
+			}
+		}
+	}
+
+	/*
+	 * 영문/숫자 단어의 부분 일치 검색용 접미사 목록
+	 *  - 단어의 접미사마다 해당 단어를 보관 ex) spring -> spring, pring, ring, ing, ng, g
+	 *  - 검색어를 포함하는 단어 = 검색어로 시작하는 접미사를 가진 단어 => 정렬된 범위만 조회 O(log V + 결과 수)
+	 *  - 긴 단어 때문에 메모리가 커지지 않도록 접미사는 앞의 MAX_SUFFIX글자만 보관하고, 더 긴 검색어는 찾은 단어를 contains로 다시 확인
+	 */
+	static class SuffixIndex {
+		private static final int MAX_SUFFIX = 16;
+		private final TreeMap<String, Set<String>> suffixes = new TreeMap<>();
+
+		void add(String term) {
+			for (int i = 0; i < term.length(); i++) {
+				suffixes.computeIfAbsent(suffix(term, i), k -> new HashSet<>()).add(term);
+			}
+		}
+
+		void remove(String term) {
+			for (int i = 0; i < term.length(); i++) {
+				String key = suffix(term, i);
+				Set<String> terms = suffixes.get(key);
+				if (terms != null && terms.remove(term) && terms.isEmpty()) {
+					suffixes.remove(key);
+				}
+			}
+		}
+
+		// query를 포함하는 단어
+		Set<String> find(String query) {
+			String prefix = query.length() > MAX_SUFFIX ? query.substring(0, MAX_SUFFIX) : query;
+			Set<String> found = new HashSet<>();
+			for (Set<String> terms : suffixes.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+				for (String term : terms) {
+					if (query.length() <= MAX_SUFFIX || term.contains(query)) {
+						found.add(term);
+					}
+				}
+			}
+			return found;
+		}
+
+		private static String suffix(String term, int start) {
+			return term.substring(start, Math.min(term.length(), start + MAX_SUFFIX));
+		}
+	}
+
+	/*
+	 * 검색어 하나에 해당하는 색인 단어
+	 *  - partial이 아니면 한글 2글자 이상 : 검색어의 bigram이 연속된 위치에 모두 있는 게시글을 찾음
+	 *  - partial이면 한 글자 한글은 해당 글자로 시작하는 단어, 영문/숫자는 검색어를 포함하는 단어를 모두 찾음
+	 */
+	private static class QueryTerm {
+		private final String text;
+		private final boolean partial;
+
+		private QueryTerm(String text, boolean partial) {
+			this.text = text;
+			this.partial = partial;
+		}
+	}
+
+	private static final int[][] EMPTY = {new int[0], new int[0]};
+
+	private final Map<Integer, Doc> docs = new HashMap<>();
+	// key : 단어, value : 게시글 목록. 앞글자 검색(prefix)을 위해 정렬된 TreeMap 사용
+	private final TreeMap<String, Postings> titlePostings = new TreeMap<>();
+	private final TreeMap<String, Postings> contentPostings = new TreeMap<>();
+	// 영문/숫자 단어의 접미사 목록 (postings와 같이 쓰기 락 안에서 변경)
+	private final SuffixIndex titleSuffixes = new SuffixIndex();
+	private final SuffixIndex contentSuffixes = new SuffixIndex();
+	private long totalLength;
+	private long version; // 색인이 바뀔 때마다 증가 (쓰기 락으로 보호). 보관된 검색결과의 유효성 확인용
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object writeMutex = new Object(); // 색인 변경은 한 번에 하나씩 (새 목록을 만드는 동안 검색은 막지 않음)
+
+	// key : 색인 버전 + 검색조건, value : 점수순으로 정렬된 게시글번호. 오래 사용하지 않은 결과부터 제거 (LRU)
+	private final Map<String, int[]> rankings = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			return size() > MAX_RANKINGS;
+		}
+	};
+
+	private volatile boolean ready = false;
+	private volatile long syncedAt; // 마지막으로 DB와 맞춘 시각 (이 서버 기준)
+	private Date syncedUntil; // 마지막 확인 시 DB 시각. 이후에 수정된 게시글만 조회 (sync 스레드만 사용)
+	// 최초 색인 도중 등록/수정된 게시글 (DB에서 읽어온 예전 내용으로 덮어쓰지 않도록)
+	private final Set<Integer> updatedWhileLoading = ConcurrentHashMap.newKeySet();
+
+	// 게시글이 많으면 시간이 걸리므로 별도 스레드에서 색인 (그동안은 DB 검색 사용)
+	@PostConstruct
+	public void init() {
+		Thread loader = new Thread(this::load, "board-search-indexer");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	private void load() {
+		long start = System.currentTimeMillis();
+		try {
+			Date dbTime = boardDao.selectCurrentTime();
+			// 전체 결과를 List로 받지 않고 한 행씩 받아서 색인
+			boardDao.selectSearchSource(context -> {
+				Board b = context.getResultObject();
+				if (!updatedWhileLoading.contains(b.getBoardNo())) {
+					put(b);
+				}
+			});
+			syncedUntil = dbTime;
+			syncedAt = System.currentTimeMillis();
+			ready = true;
+			updatedWhileLoading.clear();
+			log.info("게시글 검색 인덱스 생성 완료 - {}건, 단어 {}개, {}ms", docs.size(),
+					titlePostings.size() + contentPostings.size(), System.currentTimeMillis() - start);
+		} catch (RuntimeException e) {
+			log.error("게시글 검색 인덱스 생성 실패 (DB 검색 사용)", e);
+		}
+	}
+
+	/*
+	 * 다른 서버에서 등록/수정/삭제된 게시글 반영
+	 *  - MODIFY_DATE가 (마지막 확인 시각 - SYNC_OVERLAP) 이후인 게시글만 조회 (BOARD.MODIFY_DATE 인덱스)
+	 *    확인 시각보다 먼저 수정했지만 늦게 커밋된 게시글도 다음 확인에서 찾도록 구간을 겹쳐서 조회
+	 *  - 겹친 구간에서 다시 읽은 게시글, 이 서버에서 이미 색인한 게시글은 내용이 같으면 건너뜀 (색인 버전이 바뀌지 않음)
+	 */
+	@Scheduled(fixedDelay = 5000)
+	public void sync() {
+		if (!ready) {
+			return;
+		}
+		try {
+			Date dbTime = boardDao.selectCurrentTime();
+			Date since = new Date(syncedUntil.getTime() - SYNC_OVERLAP);
+			List<Board> changed = boardDao.selectSearchChanges(since);
+			for (Board b : changed) {
+				put(b);
+			}
+			syncedUntil = dbTime;
+			syncedAt = System.currentTimeMillis();
+			if (!changed.isEmpty()) {
+				log.debug("게시글 검색 인덱스 동기화 - {}건 확인", changed.size());
+			}
+		} catch (RuntimeException e) {
+			log.error("게시글 검색 인덱스 동기화 실패", e);
+		}
+	}
+
+	// 제목/내용 검색이면서 색인이 준비되어 있고 최근에 DB와 맞춘 경우에만 인덱스 사용
+	public boolean supports(Map<String, Object> paramMap) {
+		Object condition = paramMap.get("condition");
+		Object keyword = paramMap.get("keyword");
+		if (!ready || System.currentTimeMillis() - syncedAt > STALE_AFTER || keyword == null || !("title".equals(condition) || "content".equals(condition) || "titleAndContent".equals(condition))) {
+			return false;
+		}
+		return !queryTerms(keyword.toString()).isEmpty();
+	}
+
+	public int count(Map<String, Object> paramMap) {
+		return ranking(paramMap).length;
+	}
+
+	// 점수가 높은 순(같으면 최신글 순)으로 offset번째부터 limit개의 게시글번호 반환
+	public List<Integer> search(Map<String, Object> paramMap, int offset, int limit) {
+		int[] ranking = ranking(paramMap);
+		List<Integer> result = new ArrayList<>();
+		for (int i = offset; i < ranking.length && i < offset + limit; i++) {
+			result.add(ranking[i]);
+		}
+		return result;
+	}
+
+	// 검색조건에 맞는 게시글번호 전체를 점수순으로 정렬. 같은 색인 버전에서 계산한 결과가 있으면 재사용
+	private int[] ranking(Map<String, Object> paramMap) {
+		lock.readLock().lock();
+		try {
+			String key = version + ":" + paramMap.get("boardCode") + ":" + paramMap.get("condition") + ":" + paramMap.get("keyword");
+			synchronized (rankings) {
+				int[] cached = rankings.get(key);
+				if (cached != null) {
+					return cached;
+				}
+			}
+			List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(match(paramMap).entrySet());
+			sorted.sort(Map.Entry.<Integer, Double>comparingByValue()
+					.thenComparing(Map.Entry.comparingByKey()).reversed());
+			int[] ranking = new int[sorted.size()];
+			for (int i = 0; i < ranking.length; i++) {
+				ranking[i] = sorted.get(i).getKey();
+			}
+			synchronized (rankings) {
+				rankings.put(key, ranking);
+			}
+			return ranking;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * 모든 검색어를 포함하는 게시글과 점수 계산
+	 *  - 검색어별 게시글 목록은 번호순으로 정렬되어 있으므로 두 포인터로 교집합을 구함
+	 *  - 결과가 적은 검색어부터 교집합을 구해서 비교 횟수를 줄임
+	 */
+	private Map<Integer, Double> match(Map<String, Object> paramMap) {
+		String boardCd = String.valueOf(paramMap.get("boardCode"));
+		String condition = String.valueOf(paramMap.get("condition"));
+		boolean inTitle = !"content".equals(condition);
+		boolean inContent = !"title".equals(condition);
+
+		List<int[][]> lists = new ArrayList<>();
+		for (QueryTerm term : queryTerms(String.valueOf(paramMap.get("keyword")))) {
+			int[][] title = inTitle ? lookup(titlePostings, titleSuffixes, term) : EMPTY;
+			int[][] content = inContent ? lookup(contentPostings, contentSuffixes, term) : EMPTY;
+			lists.add(merge(title, content, TITLE_WEIGHT, 1));
+		}
+		lists.sort(Comparator.comparingInt(list -> list[0].length));
+
+		double avgLength = docs.isEmpty() ? 1 : (double) totalLength / docs.size();
+		int[] result = null;
+		double[] scores = null;
+		for (int[][] list : lists) {
+			double idf = Math.log(1 + (docs.size() - list[0].length + 0.5) / (list[0].length + 0.5));
+			int[] next = new int[result == null ? list[0].length : Math.min(result.length, list[0].length)];
+			double[] nextScores = new double[next.length];
+			int n = 0;
+			int i = 0;
+			int j = 0;
+			while (j < list[0].length && (result == null || i < result.length)) {
+				int boardNo = list[0][j];
+				if (result != null && result[i] < boardNo) {
+					i++;
+					continue;
+				}
+				if (result != null && result[i] > boardNo) {
+					j++;
+					continue;
+				}
+				Doc doc = docs.get(boardNo);
+				if (doc != null && doc.boardCd.equals(boardCd)) {
+					int tf = list[1][j];
+					double weight = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length / avgLength));
+					next[n] = boardNo;
+					nextScores[n++] = (scores == null ? 0 : scores[i]) + weight;
+				}
+				if (result != null) {
+					i++;
+				}
+				j++;
+			}
+			result = Arrays.copyOf(next, n);
+			scores = Arrays.copyOf(nextScores, n);
+			if (n == 0) {
+				break;
+			}
+		}
+		Map<Integer, Double> matched = new HashMap<>();
+		for (int k = 0; result != null && k < result.length; k++) {
+			matched.put(result[k], scores[k]);
+		}
+		return matched;
+	}
+
+	private int[][] lookup(TreeMap<String, Postings> postings, SuffixIndex suffixes, QueryTerm term) {
+		if (!term.partial) {
+			String[] grams = new String[term.text.length() - 1];
+			for (int i = 0; i < grams.length; i++) {
+				grams[i] = term.text.substring(i, i + 2);
+			}
+			if (grams.length == 1) {
+				Postings list = postings.get(grams[0]);
+				return list == null ? EMPTY : list.decode();
+			}
+			return phrase(postings, grams);
+		}
+		int[][] result = EMPTY;
+		if (isCjk(term.text.charAt(0))) {
+			// 한 글자 한글 : 해당 글자로 시작하는 bigram + 마지막 글자로 색인된 단어 (정렬된 범위만 조회)
+			for (Postings list : postings.subMap(term.text, true, term.text + Character.MAX_VALUE, true).values()) {
+				result = merge(result, list.decode(), 1, 1);
+			}
+			return result;
+		}
+		// 영문/숫자 : LIKE '%keyword%'와 같도록 검색어를 포함하는 모든 단어 (접미사 목록에서 범위 조회)
+		for (String found : suffixes.find(term.text)) {
+			result = merge(result, postings.get(found).decode(), 1, 1);
+		}
+		return result;
+	}
+
+	/*
+	 * 연속된 bigram 검색 : 모든 bigram을 포함하는 게시글 중 i번째 bigram이 (첫 bigram 위치 + i)에 있는 경우만 찾음
+	 *  - 각 목록의 커서를 같은 게시글번호까지 앞으로 이동시키면서 교집합을 구하고, 공통 게시글만 등장위치를 읽음
+	 *  - 등장횟수는 검색어 전체가 나온 횟수
+	 */
+	private int[][] phrase(TreeMap<String, Postings> postings, String[] grams) {
+		Cursor[] cursors = new Cursor[grams.length];
+		int max = Integer.MAX_VALUE;
+		for (int i = 0; i < grams.length; i++) {
+			Postings list = postings.get(grams[i]);
+			if (list == null) {
+				return EMPTY;
+			}
+			cursors[i] = list.cursor();
+			max = Math.min(max, list.size());
+		}
+		int[] docs = new int[max];
+		int[] tfs = new int[max];
+		int n = 0;
+		int target = 0;
+		while (true) {
+			boolean aligned = true;
+			for (Cursor cursor : cursors) {
+				if (!cursor.advance(target)) {
+					return new int[][] {Arrays.copyOf(docs, n), Arrays.copyOf(tfs, n)};
+				}
+				if (cursor.boardNo > target) {
+					target = cursor.boardNo;
+					aligned = false;
+				}
+			}
+			if (!aligned) {
+				continue;
+			}
+			int[][] positions = new int[cursors.length][];
+			for (int i = 0; i < cursors.length; i++) {
+				positions[i] = cursors[i].positions();
+			}
+			int tf = 0;
+			for (int start : positions[0]) {
+				int i = 1;
+				while (i < positions.length && Arrays.binarySearch(positions[i], start + i) >= 0) {
+					i++;
+				}
+				if (i == positions.length) {
+					tf++;
+				}
+			}
+			if (tf > 0) {
+				docs[n] = target;
+				tfs[n++] = tf;
+			}
+			target++;
+		}
+	}
+
+	// 번호순으로 정렬된 두 목록을 합침 (같은 게시글은 가중치를 곱한 등장횟수를 더함)
+	private static int[][] merge(int[][] a, int[][] b, int weightA, int weightB) {
+		int[] docs = new int[a[0].length + b[0].length];
+		int[] tfs = new int[docs.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a[0].length || j < b[0].length) {
+			if (j == b[0].length || (i < a[0].length && a[0][i] < b[0][j])) {
+				docs[n] = a[0][i];
+				tfs[n++] = weightA * a[1][i++];
+			} else if (i == a[0].length || b[0][j] < a[0][i]) {
+				docs[n] = b[0][j];
+				tfs[n++] = weightB * b[1][j++];
+			} else {
+				docs[n] = a[0][i];
+				tfs[n++] = weightA * a[1][i++] + weightB * b[1][j++];
+			}
+		}
+		return new int[][] {Arrays.copyOf(docs, n), Arrays.copyOf(tfs, n)};
+	}
+
+	// 트랜잭션이 커밋된 후 색인 (롤백된 게시글이 검색되지 않도록)
+	public void putAfterCommit(Board b) {
+		Board copy = new Board();
+		copy.setBoardNo(b.getBoardNo());
+		copy.setBoardCd(b.getBoardCd());
+		copy.setBoardTitle(b.getBoardTitle());
+		copy.setBoardContent(b.getBoardContent());
+		copy.setStatus(b.getStatus());
+		if (!ready) {
+			updatedWhileLoading.add(copy.getBoardNo());
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			put(copy);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				put(copy);
+			}
+		});
+	}
+
+	public void put(Board b) {
+		// 삭제(STATUS = 'N')된 게시글은 색인에서 제거만 함
+		if ("N".equals(b.getStatus())) {
+			remove(b.getBoardNo());
+			return;
+		}
+		int signature = Objects.hash(b.getBoardCd(), b.getBoardTitle(), b.getBoardContent());
+		update(b.getBoardNo(), b.getBoardCd(), signature, termPositions(b.getBoardTitle()), termPositions(b.getBoardContent()));
+	}
+
+	public void remove(int boardNo) {
+		update(boardNo, null, 0, new HashMap<>(), new HashMap<>());
+	}
+
+	// boardCd가 null이면 제거
+	private void update(int boardNo, String boardCd, int signature, Map<String, int[]> title, Map<String, int[]> content) {
+		int length = 0;
+		for (int[] positions : title.values()) {
+			length += TITLE_WEIGHT * positions.length;
+		}
+		for (int[] positions : content.values()) {
+			length += positions.length;
+		}
+		synchronized (writeMutex) {
+			// 이전 내용과 비교하여 바뀌는 단어의 새 목록을 미리 만듦 (단어마다 한 번만). 검색은 기존 목록으로 계속 처리
+			Doc old = docs.get(boardNo);
+			if (boardCd == null ? old == null : old != null && old.signature == signature && boardCd.equals(old.boardCd)) {
+				return; // 없는 게시글 제거, 같은 내용으로 다시 색인
+			}
+			Map<String, Postings> titleChanges = new HashMap<>();
+			Map<String, Postings> contentChanges = new HashMap<>();
+			List<String> titleAppends = new ArrayList<>();
+			List<String> contentAppends = new ArrayList<>();
+			prepare(titlePostings, old == null ? null : old.titleTerms, title, boardNo, titleChanges, titleAppends);
+			prepare(contentPostings, old == null ? null : old.contentTerms, content, boardNo, contentChanges, contentAppends);
+
+			lock.writeLock().lock();
+			try {
+				apply(titlePostings, titleSuffixes, titleChanges, titleAppends, title, boardNo);
+				apply(contentPostings, contentSuffixes, contentChanges, contentAppends, content, boardNo);
+				if (old != null) {
+					totalLength -= old.length;
+				}
+				if (boardCd == null) {
+					docs.remove(boardNo);
+				} else {
+					docs.put(boardNo, new Doc(boardCd, length, signature,
+							title.keySet().toArray(new String[0]), content.keySet().toArray(new String[0])));
+					totalLength += length;
+				}
+				version++;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/*
+	 * 단어별로 바뀔 목록 계산 (writeMutex 안에서 호출되므로 다른 스레드가 목록을 바꾸지 않음)
+	 *  - 없어진 단어 : boardNo를 뺀 새 목록 (비면 null => 단어 제거)
+	 *  - 새 단어 : 목록이 없으면 새로 만들고, boardNo가 가장 크면 뒤에 붙이기만 하도록 appends에 추가
+	 *  - 그 외(수정 시 남아있는 단어 등) : boardNo의 위치를 교체한 새 목록
+	 */
+	private void prepare(TreeMap<String, Postings> postings, String[] oldTerms, Map<String, int[]> terms, int boardNo,
+			Map<String, Postings> changes, List<String> appends) {
+		if (oldTerms != null) {
+			for (String term : oldTerms) {
+				Postings list = postings.get(term);
+				if (list != null && !terms.containsKey(term)) {
+					changes.put(term, list.without(boardNo));
+				}
+			}
+		}
+		terms.forEach((term, positions) -> {
+			Postings list = postings.get(term);
+			if (list == null) {
+				Postings created = new Postings();
+				created.append(boardNo, positions);
+				changes.put(term, created);
+			} else if (boardNo > list.last) {
+				appends.add(term);
+			} else {
+				changes.put(term, list.with(boardNo, positions));
+			}
+		});
+	}
+
+	// 쓰기 락 안에서 미리 만든 목록으로 교체 + 뒤에 붙이기. 영문/숫자 단어가 새로 생기거나 없어지면 접미사 목록도 변경
+	private void apply(TreeMap<String, Postings> postings, SuffixIndex suffixes, Map<String, Postings> changes,
+			List<String> appends, Map<String, int[]> terms, int boardNo) {
+		changes.forEach((term, list) -> {
+			Postings previous = list == null ? postings.remove(term) : postings.put(term, list);
+			if (!isCjk(term.charAt(0))) {
+				if (list == null && previous != null) {
+					suffixes.remove(term);
+				} else if (list != null && previous == null) {
+					suffixes.add(term);
+				}
+			}
+		});
+		for (String term : appends) {
+			postings.get(term).append(boardNo, terms.get(term));
+		}
+	}
+
+	// 단어별 등장위치 (위치 : 색인용 단어 목록에서의 순번)
+	private Map<String, int[]> termPositions(String text) {
+		List<String> tokens = tokenize(plainText(text));
+		Map<String, List<Integer>> positions = new HashMap<>();
+		for (int i = 0; i < tokens.size(); i++) {
+			positions.computeIfAbsent(tokens.get(i), k -> new ArrayList<>()).add(i);
+		}
+		Map<String, int[]> result = new HashMap<>();
+		positions.forEach((term, list) -> result.put(term, list.stream().mapToInt(Integer::intValue).toArray()));
+		return result;
+	}
+
+	/*
+	 * 색인용 단어 분리
+	 *  - 한글(한자, 일본어 포함)은 조사가 붙고 띄어쓰기가 일정하지 않아 단어 단위로는 "게시글"로 "게시글을"을 찾을 수 없음
+	 *    => 2글자씩 잘라서(bigram) 색인 : "게시글을" -> 게시, 시글, 글을 + 마지막 글자 "을"
+	 *    같은 구간의 bigram은 위치가 1씩 증가하므로 연속 여부를 위치로 확인할 수 있음
+	 *    마지막 글자를 함께 색인해두면 한 글자 검색을 "그 글자로 시작하는 단어" 검색으로 처리할 수 있음
+	 *  - 영문/숫자는 단어 그대로 소문자로 색인하고, 검색 시 검색어를 포함하는 단어로 찾음 (부분 일치)
+	 */
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		for (String word : words(text)) {
+			for (String run : scriptRuns(word)) {
+				if (!isCjk(run.charAt(0))) {
+					tokens.add(run);
+					continue;
+				}
+				for (int i = 0; i + 2 <= run.length(); i++) {
+					tokens.add(run.substring(i, i + 2));
+				}
+				tokens.add(run.substring(run.length() - 1));
+			}
+		}
+		return tokens;
+	}
+
+	// 검색어 분리. 색인과 같은 규칙으로 나누되 한 글자 한글과 영문/숫자는 부분 일치로 검색
+	static List<QueryTerm> queryTerms(String keyword) {
+		List<QueryTerm> terms = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		for (String word : words(keyword)) {
+			for (String run : scriptRuns(word)) {
+				if (isCjk(run.charAt(0)) && run.length() >= 2) {
+					if (seen.add(run)) {
+						terms.add(new QueryTerm(run, false)); // 연속된 bigram으로 검색
+					}
+				} else if (seen.add(run)) {
+					terms.add(new QueryTerm(run, true));
+				}
+			}
+		}
+		return terms;
+	}
+
+	// 글자/숫자가 이어진 구간을 하나의 단어로 분리 (소문자로 통일)
+	static List<String> words(String text) {
+		List<String> words = new ArrayList<>();
+		if (text == null) {
+			return words;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (letter && start == -1) {
+				start = i;
+			} else if (!letter && start != -1) {
+				words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	// 한글 구간과 그 외(영문/숫자) 구간으로 분리 ex) "spring게시판2" -> spring, 게시판, 2
+	private static List<String> scriptRuns(String word) {
+		List<String> runs = new ArrayList<>();
+		int start = 0;
+		for (int i = 1; i <= word.length(); i++) {
+			if (i == word.length() || isCjk(word.charAt(i)) != isCjk(word.charAt(start))) {
+				runs.add(word.substring(start, i));
+				start = i;
+			}
+		}
+		return runs;
+	}
+
+	private static boolean isCjk(char c) {
+		Character.UnicodeScript script = Character.UnicodeScript.of(c);
+		return script == Character.UnicodeScript.HANGUL || script == Character.UnicodeScript.HAN
+				|| script == Character.UnicodeScript.HIRAGANA || script == Character.UnicodeScript.KATAKANA;
+	}
+
+	// DB에는 XSS, 개행 처리된 값이 저장되어 있으므로 원래 문자로 되돌린 후 색인
+	private static String plainText(String text) {
+		if (text == null) {
+			return null;
+		}
+		return text.replace("<br>", " ").replace("&lt;", "<").replace("&gt;", ">")
+				.replace("&quot;", "\"").replace("&amp;", "&");
+	}
+
+	/*
+	 * 검색결과 하이라이트
+	 *  - 제목 : 검색어와 일치하는 부분을 <mark>로 감쌈
+	 *  - 내용 검색인 경우 : 내용 중 처음 검색어가 나오는 위치 주변을 미리보기로 설정
+	 *  - 제목/내용은 이미 XSS 처리된 값이므로 태그(<br>)와 문자참조(&lt; 등) 내부는 건드리지 않음
+	 */
+	public void highlight(Board b, Map<String, Object> paramMap) {
+		List<String> words = words(String.valueOf(paramMap.get("keyword")));
+		b.setBoardTitle(mark(b.getBoardTitle(), words));
+		if (!"title".equals(paramMap.get("condition")) && b.getBoardContent() != null) {
+			b.setSnippet(snippet(b.getBoardContent().replace("<br>", " "), words));
+		}
+	}
+
+	private String snippet(String content, List<String> words) {
+		String lower = content.toLowerCase(Locale.ROOT);
+		int found = -1;
+		for (String word : words) {
+			int index = lower.indexOf(word);
+			if (index != -1 && (found == -1 || index < found)) {
+				found = index;
+			}
+		}
+		int start = found == -1 ? 0 : Math.max(0, found - SNIPPET_BEFORE);
+		int end = Math.min(content.length(), start + SNIPPET_LENGTH);
+		// 문자참조(&amp; 등) 중간에서 잘리지 않도록 조정
+		int amp = content.lastIndexOf('&', start - 1);
+		if (amp != -1 && start - amp < 8 && content.indexOf(';', amp) >= start) {
+			start = content.indexOf(';', amp) + 1;
+		}
+		amp = content.lastIndexOf('&', end - 1);
+		if (amp != -1 && amp >= start && end - amp < 8 && content.indexOf(';', amp) >= end) {
+			end = amp;
+		}
+		if (start >= end) {
+			return "";
+		}
+		return (start > 0 ? "..." : "") + mark(content.substring(start, end), words)
+				+ (end < content.length() ? "..." : "");
+	}
+
+	private String mark(String html, List<String> words) {
+		if (html == null || words.isEmpty()) {
+			return html;
+		}
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+		while (i < html.length()) {
+			char c = html.charAt(i);
+			int close = c == '<' ? html.indexOf('>', i) : c == '&' ? html.indexOf(';', i) : -1;
+			if (close != -1) {
+				sb.append(html, i, close + 1); // 태그, 문자참조는 그대로 복사
+				i = close + 1;
+				continue;
+			}
+			int j = i;
+			while (j < html.length() && html.charAt(j) != '<' && html.charAt(j) != '&') {
+				j++;
+			}
+			if (j == i) {
+				j++; // 닫히지 않은 '<', '&'
+			}
+			markText(sb, html.substring(i, j), words);
+			i = j;
+		}
+		return sb.toString();
+	}
+
+	private void markText(StringBuilder sb, String text, List<String> words) {
+		String lower = text.toLowerCase(Locale.ROOT);
+		if (lower.length() != text.length()) {
+			sb.append(text); // 소문자 변환 시 길이가 바뀌는 문자가 있으면 위치를 맞출 수 없으므로 생략
+			return;
+		}
+		boolean[] matched = new boolean[text.length()];
+		for (String word : words) {
+			for (int index = lower.indexOf(word); index != -1; index = lower.indexOf(word, index + 1)) {
+				for (int k = index; k < index + word.length(); k++) {
+					matched[k] = true;
+				}
+			}
+		}
+		for (int k = 0; k < text.length(); k++) {
+			if (matched[k] && (k == 0 || !matched[k - 1])) {
+				sb.append("<mark>");
+			}
+			sb.append(text.charAt(k));
+			if (matched[k] && (k == text.length() - 1 || !matched[k + 1])) {
+				sb.append("</mark>");
+			}
+		}
+	}
+}
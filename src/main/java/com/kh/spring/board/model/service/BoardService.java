@@ -8,7 +8,6 @@ import org.springframework.web.multipart.MultipartFile;
 import com.kh.spring.board.model.vo.Board;
 import com.kh.spring.board.model.vo.BoardExt;
 import com.kh.spring.board.model.vo.BoardImg;
-import com.kh.spring.board.model.vo.BoardType;
 import com.kh.spring.common.model.vo.PageInfo;
 
 public interface BoardService {
@@ -16,11 +15,17 @@ public interface BoardService {
 	int selectListCount(Map<String, Object> paramMap);
 
 	List<Board> selectList(PageInfo pi, Map<String, Object> paramMap);
+	
+	boolean isIndexedSearch(Map<String, Object> paramMap);
+
+	List<Board> selectListKeyset(PageInfo pi, Map<String, Object> paramMap);
 
 	int insertBoard(Board b , List<BoardImg> imgList);
 
 	BoardExt selectBoard(int boardNo);
 
+	String selectBoardWriter(int boardNo);
+
 	int increaseCount(int boardNo);
 
 	List<BoardImg> selectBoardImgList(int boardNo);
@@ -29,12 +34,16 @@ public interface BoardService {
 
 	List<String> selectFileList();
 
-	List<BoardType> selectBoardTypeList();
+	List<String> selectFileListByName(List<String> changeNames);
 
-	Map<String, String> getBoardTypeMap();
+	List<Map<String, Object>> selectFileOwnerList();
 
-	int updateBoard(Board board, String deleteList, List<BoardImg> imgList);
+	int updateBoard(Board board, List<Integer> deleteList, List<BoardImg> imgList);
 
 	BoardImg getBoardImg(String string);
 
+	BoardImg selectBoardImg(int boardImgNo);
+
+	BoardImg selectFirstBoardImg(int boardNo);
+
 }
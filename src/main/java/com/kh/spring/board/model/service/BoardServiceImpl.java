@@ -1,8 +1,15 @@
 package com.kh.spring.board.model.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -11,9 +18,11 @@ import com.kh.spring.board.model.dao.BoardDao;
 import com.kh.spring.board.model.vo.Board;
 import com.kh.spring.board.model.vo.BoardExt;
 import com.kh.spring.board.model.vo.BoardImg;
-import com.kh.spring.board.model.vo.BoardType;
 import com.kh.spring.common.Utils;
 import com.kh.spring.common.model.vo.PageInfo;
+import com.kh.spring.common.template.Pagination;
+import com.kh.spring.common.upload.AttachmentIndex;
+import com.kh.spring.common.upload.UploadPipeline;
 
 import lombok.RequiredArgsConstructor;
 
@@ -22,21 +31,86 @@ import lombok.RequiredArgsConstructor;
 public class BoardServiceImpl implements BoardService {
 
 	private final BoardDao boardDao;
-
-	@Override
-	public Map<String, String> getBoardTypeMap() {
-		return boardDao.getBoardTypeMap();
-	}
+	private final BoardCountCache countCache; // 목록 총 갯수 캐시
+	private final BoardViewCounter viewCounter; // 조회수 지연 반영 카운터
+	private final BoardDetailCache detailCache; // 게시글 상세정보 캐시
+	private final UploadPipeline uploadPipeline; // 첨부파일 업로드 파이프라인
+	private final BoardSearchIndex searchIndex; // 제목/내용 검색 인덱스
+	private final BoardWriterCache writerCache; // 게시글번호 -> 작성자번호 캐시
+	// 첨부파일 인덱스 (회원별 사용량). AttachmentIndex가 초기화할 때 BoardService를 사용하므로 지연 주입
+	@Lazy
+	@Autowired
+	private AttachmentIndex attachmentIndex;
 	
 	@Override
 	public int selectListCount(Map<String, Object> paramMap) {
-		return boardDao.selectListCount(paramMap);
+		// 제목/내용 검색은 검색 인덱스에서 바로 계산 (LIKE 검색 COUNT 없음)
+		if (searchIndex.supports(paramMap)) {
+			return searchIndex.count(paramMap);
+		}
+		// 캐시에 없거나 만료된 경우에만 COUNT 쿼리 수행
+		return countCache.get(paramMap, boardDao::selectListCount);
 	}
 
 	@Override
 	public List<Board> selectList(PageInfo pi, Map<String, Object> paramMap) {
+		if (searchIndex.supports(paramMap)) {
+			return searchList(pi, paramMap);
+		}
 		return boardDao.selectList(pi, paramMap);
 	}
+	
+	@Override
+	public boolean isIndexedSearch(Map<String, Object> paramMap) {
+		return searchIndex.supports(paramMap);
+	}
+	
+	// 검색 인덱스에서 현재 페이지의 게시글번호만 구한 후 PK로 조회하고, 검색 점수순으로 정렬 + 하이라이트
+	private List<Board> searchList(PageInfo pi, Map<String, Object> paramMap) {
+		int offset = (pi.getCurrentPage() - 1) * pi.getBoardLimit();
+		List<Integer> boardNoList = searchIndex.search(paramMap, offset, pi.getBoardLimit());
+		if (boardNoList.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Map<Integer, Board> boards = new HashMap<>();
+		for (Board b : boardDao.selectListByNo(boardNoList)) {
+			boards.put(b.getBoardNo(), b);
+		}
+		List<Board> list = new ArrayList<>();
+		for (int boardNo : boardNoList) {
+			Board b = boards.get(boardNo);
+			if (b != null) {
+				searchIndex.highlight(b, paramMap);
+				list.add(b);
+			} else {
+				// 삭제(STATUS = 'N')되어 조회되지 않은 게시글은 색인에서도 제거
+				searchIndex.remove(boardNo);
+			}
+		}
+		return list;
+	}
+	
+	@Override
+	public List<Board> selectListKeyset(PageInfo pi, Map<String, Object> paramMap) {
+		List<Board> list = boardDao.selectListKeyset(pi, paramMap);
+		// limit+1개를 조회했으므로 한 건이 더 있으면 다음(또는 이전) 페이지가 존재
+		boolean hasMore = list.size() > pi.getBoardLimit();
+		if (hasMore) {
+			list = new ArrayList<>(list.subList(0, pi.getBoardLimit()));
+		}
+		// prev 방향은 오름차순으로 조회했으므로 화면 순서(내림차순)로 뒤집어준다
+		if ("prev".equals(pi.getDirection())) {
+			Collections.reverse(list);
+		}
+		if (list.isEmpty()) {
+			// 조회결과가 없으면 현재 커서를 그대로 유지해서 되돌아갈 수 있게 함
+			Pagination.setKeysetResult(pi, false, pi.getCursor(), pi.getCursor());
+		} else {
+			Pagination.setKeysetResult(pi, hasMore,
+					list.get(0).getBoardNo(), list.get(list.size() - 1).getBoardNo());
+		}
+		return list;
+	}
 
 	@Override
 	@Transactional(rollbackFor = {Exception.class}) // 선언적 트랜잭션 관리
@@ -62,8 +136,7 @@ public class BoardServiceImpl implements BoardService {
 		// 설명같은거 할 때 <script> 같은거 쓰면 &lt;로 변환돼서 그냥 < 문자 그 자체로 해석
 		// \r\n 개행문자를 <br>태그로 치환해서 데이터베이스에 저장해야 함
 		// 개행문자 못쓰는건 아닌데 얼마나 많이쓰든 항상 하나로만 처리되니까
-		b.setBoardContent(Utils.XSSHandling(b.getBoardContent()));
-		b.setBoardContent(Utils.newLineHandling(b.getBoardContent()));
+		b.setBoardContent(Utils.XSSNewLineHandling(b.getBoardContent())); // XSS + 개행 처리를 한 번에
 		b.setBoardTitle(Utils.XSSHandling(b.getBoardTitle()));
 		
 		// 게시글 저장
@@ -85,19 +158,38 @@ public class BoardServiceImpl implements BoardService {
 			if (imgResult != imgList.size()) {
 				throw new RuntimeException("첨부파일 등록 실패");
 			}
+			// 트랜잭션 커밋 시 임시파일을 실제 경로로 이동, 롤백 시 삭제
+			uploadPipeline.commitAfterTransaction(imgList);
+			attachmentIndex.addReferencesAfterCommit(changeNames(imgList), Integer.parseInt(b.getBoardWriter()));
 		}
+		countCache.onInsert(b.getBoardCd());
+		detailCache.evictAfterCommit(b.getBoardNo());
+		searchIndex.putAfterCommit(b);
 		return result;
 	}
 
 	@Override
 	public BoardExt selectBoard(int boardNo) {
-		return boardDao.selectBoard(boardNo);
+		// 캐시에 없을때만 board.selectBoard(이미지 조인) 쿼리 수행
+		BoardExt b = detailCache.get(boardNo, boardDao::selectBoard);
+		if (b != null) {
+			// DB값 + 아직 반영되지 않은 조회수
+			b.setCount(b.getCount() + viewCounter.pending(boardNo));
+		}
+		return b;
+	}
+
+	@Override
+	public String selectBoardWriter(int boardNo) {
+		return writerCache.get(boardNo, boardDao::selectBoardWriter);
 	}
 
 	@Override
 	public int increaseCount(int boardNo) {
 		// 하나밖에 업성서 트랜잭션 고나리x
-		return boardDao.increaseCount(boardNo);
+		// 매 조회마다 UPDATE 하지 않고 메모리에 누적 후 BoardViewCounter가 주기적으로 반영
+		viewCounter.increase(boardNo);
+		return 1;
 	}
 
 	@Override
@@ -110,8 +202,7 @@ public class BoardServiceImpl implements BoardService {
 	public int updateBoard(Board board, String deleteList, MultipartFile upfile, List<BoardImg> imgList)
 			throws Exception {
 		
-		board.setBoardContent(Utils.XSSHandling(board.getBoardContent()));
-		board.setBoardContent(Utils.newLineHandling(board.getBoardContent()));
+		board.setBoardContent(Utils.XSSNewLineHandling(board.getBoardContent())); // XSS + 개행 처리를 한 번에
 		board.setBoardTitle(Utils.XSSHandling(board.getBoardTitle()));
 		
 		int result = 0;
@@ -128,17 +219,18 @@ public class BoardServiceImpl implements BoardService {
 		if (result == 0) {
 			throw new RuntimeException("게시글 등록 실패");
 		}
+		detailCache.evictAfterCommit(board.getBoardNo());
+		searchIndex.putAfterCommit(board);
 		return result;
 	}
 	
 	@Transactional(rollbackFor = {Exception.class})
 	@Override
-	public int updateBoard(Board board, String deleteList, List<BoardImg> imgList) {
+	public int updateBoard(Board board, List<Integer> deleteList, List<BoardImg> imgList) {
 		//	    서비스 내부 로직
         //    1. 게시글 수정
         //       1) XSS, 개행 처리 후 추가
-		board.setBoardContent(Utils.XSSHandling(board.getBoardContent()));
-		board.setBoardContent(Utils.newLineHandling(board.getBoardContent()));
+		board.setBoardContent(Utils.XSSNewLineHandling(board.getBoardContent())); // XSS + 개행 처리를 한 번에
 		board.setBoardTitle(Utils.XSSHandling(board.getBoardTitle()));
 		
 		int result = boardDao.updateBoard(board);
@@ -149,39 +241,110 @@ public class BoardServiceImpl implements BoardService {
         //       2) 첨부파일이 없던 게시글에 새롭게 추가한 경우 -> INSERT
         //       3) 첨부파일이 있던 게시글에 새롭게 추가한 경우 -> UPDATE
         //       4) 첨부파일이 있던 게시글에 첨부파일은 삭제한 경우 -> DELETE
-        //        - 사용하지 않게 된 첨부파일에 대해서는 고려하지 않아도 상관 없음.(스케쥴러를 통해 정리예정)
+        //        - 삭제하거나 교체(UPDATE)한 첨부파일의 실제 파일은 커밋 후 바로 삭제 (스케쥴러는 누락된 파일만 정리)
 		
-		if (deleteList != null && !deleteList.equals("")) {
-			result = boardDao.deleteBoardImg(deleteList);
-			if (result == 0) throw new RuntimeException("첨부파일 삭제 에러");
+		int writer = Integer.parseInt(selectBoardWriter(board.getBoardNo())); // 첨부파일 사용량은 게시글 작성자에게 계산
+		if (deleteList != null && !deleteList.isEmpty()) {
+			deleteBoardImgList(board.getBoardNo(), deleteList, writer);
 		}
 		if (!imgList.isEmpty()) {
+			// boardImgNo가 0이면 INSERT, 아니면 UPDATE. 한 건씩 실행하지 않고 각각 한 문장으로 처리
+			List<BoardImg> insertList = new ArrayList<>();
+			List<BoardImg> updateList = new ArrayList<>();
+			List<Integer> updateNoList = new ArrayList<>();
 			for (BoardImg bi : imgList) {
+				bi.setRefBno(board.getBoardNo());
 				if (bi.getBoardImgNo() == 0) {
-					result = boardDao.insertBoardImg(bi);
+					insertList.add(bi);
 				} else {
-					result = boardDao.updateBoardImg(bi);
+					updateList.add(bi);
+					updateNoList.add(bi.getBoardImgNo());
+				}
+			}
+			if (!updateList.isEmpty()) {
+				// UPDATE로 교체되는 기존 파일은 작성자의 참조에서 제외하고, 커밋되면 삭제 첨부파일과 같이 실제 파일도 삭제
+				List<String> oldNames = changeNames(boardDao.selectBoardImgListByNo(board.getBoardNo(), updateNoList));
+				attachmentIndex.removeReferencesAfterCommit(oldNames, writer);
+				if (boardDao.updateBoardImgList(updateList) != updateList.size()) {
+					throw new RuntimeException("첨부파일 수정 실패");
 				}
-				if (result == 0) throw new RuntimeException("첨부파일 수정 실패");
+				// 다른 게시글(또는 교체한 파일 자신)이 같은 파일을 참조하고 있으면 삭제하지 않음
+				uploadPipeline.deleteAfterTransaction(oldNames,
+						changeName -> boardDao.countBoardImgByChangeName(changeName) > 0);
+			}
+			if (!insertList.isEmpty() && boardDao.insertBoardImgList(insertList) != insertList.size()) {
+				throw new RuntimeException("첨부파일 등록 실패");
 			}
+			result = imgList.size();
+			uploadPipeline.commitAfterTransaction(imgList);
+			attachmentIndex.addReferencesAfterCommit(changeNames(imgList), writer);
 		}
+		countCache.onUpdate(board.getBoardCd());
+		detailCache.evictAfterCommit(board.getBoardNo());
+		searchIndex.putAfterCommit(board);
 		
 		return result;
 	}
 
+	// 첨부파일 일괄 삭제 : 모두 이 게시글의 첨부파일인지 확인 후 한번에 삭제하고, 커밋되면 실제 파일도 삭제
+	private void deleteBoardImgList(int boardNo, List<Integer> deleteList, int writer) {
+		// 중복 번호, 빈 값("3,,4" -> [3, null, 4]) 제거
+		Set<Integer> imgNoSet = new LinkedHashSet<>(deleteList);
+		imgNoSet.remove(null);
+		if (imgNoSet.isEmpty()) {
+			return;
+		}
+		List<Integer> imgNoList = new ArrayList<>(imgNoSet);
+		List<BoardImg> targets = boardDao.selectBoardImgListByNo(boardNo, imgNoList);
+		if (targets.size() != imgNoList.size()) {
+			throw new RuntimeException("삭제할 수 없는 첨부파일이 포함되어 있습니다");
+		}
+		if (boardDao.deleteBoardImgList(boardNo, imgNoList) != imgNoList.size()) {
+			throw new RuntimeException("첨부파일 삭제 에러");
+		}
+		List<String> changeNames = changeNames(targets);
+		attachmentIndex.removeReferencesAfterCommit(changeNames, writer);
+		// 다른 게시글이 같은 파일을 참조하고 있으면 삭제하지 않음
+		uploadPipeline.deleteAfterTransaction(changeNames,
+				changeName -> boardDao.countBoardImgByChangeName(changeName) > 0);
+	}
+	
+	private List<String> changeNames(List<BoardImg> imgList) {
+		List<String> changeNames = new ArrayList<>();
+		for (BoardImg bi : imgList) {
+			changeNames.add(bi.getChangeName());
+		}
+		return changeNames;
+	}
+
 	@Override
 	public List<String> selectFileList() {
 		return boardDao.selectFileList();
 	}
 
 	@Override
-	public List<BoardType> selectBoardTypeList() {
-		return boardDao.selectBoardTypeList();
+	public List<String> selectFileListByName(List<String> changeNames) {
+		return boardDao.selectFileListByName(changeNames);
+	}
+
+	@Override
+	public List<Map<String, Object>> selectFileOwnerList() {
+		return boardDao.selectFileOwnerList();
 	}
 
 	@Override
 	public BoardImg getBoardImg(String changeName) {
 		return boardDao.getBoardImg(changeName);
 	}
+
+	@Override
+	public BoardImg selectBoardImg(int boardImgNo) {
+		return boardDao.selectBoardImg(boardImgNo);
+	}
+
+	@Override
+	public BoardImg selectFirstBoardImg(int boardNo) {
+		return boardDao.selectFirstBoardImg(boardNo);
+	}
 	
 }
@@ -0,0 +1,96 @@
+package com.kh.spring.board.model.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.ServletContext;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kh.spring.board.model.dao.BoardDao;
+import com.kh.spring.board.model.vo.BoardType;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 게시판 유형 저장소
+ *  - BOARD_TYPE은 거의 바뀌지 않으므로 서버 시작 시 한 번만 조회하여 변경할 수 없는(unmodifiable) Map으로 보관
+ *  - 컨트롤러, 스케쥴러, 첨부파일 인덱스는 DB 대신 여기서 조회하고
+ *    JSP(header.jsp 등)에서는 application 영역의 boardTypeMap으로 사용
+ *  - 게시판 유형이 변경되면 BoardTypeChangedEvent를 발행하여 다시 조회 (관리자 요청 시에만 DB 조회)
+ *    이벤트는 요청을 받은 서버에서만 발행되므로 다른 서버는 1분마다 BOARD_TYPE의 버전(행 수 + 내용 해시)만 조회하여
+ *    마지막으로 읽은 버전과 다르면 같은 이벤트를 발행
+ *  - 다시 조회할 때는 새 Map을 만든 뒤 참조만 교체하므로 읽는 쪽은 락 없이 항상 완전한 Map을 보게 됨
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BoardTypeRegistry {
+	
+	private final BoardDao boardDao;
+	private final ServletContext application;
+	private final ApplicationEventPublisher eventPublisher;
+	
+	private volatile Map<String, BoardType> boardTypeMap = Collections.emptyMap();
+	private volatile String version; // 마지막으로 읽은 BOARD_TYPE 버전
+	
+	// 게시판 유형이 변경되었을 때 발행하는 이벤트
+	public static class BoardTypeChangedEvent {
+	}
+	
+	@PostConstruct
+	public void init() {
+		reload();
+	}
+	
+	// 같은 이벤트를 받는 다른 컴포넌트(AttachmentIndex 등)가 새 목록을 볼 수 있도록 가장 먼저 처리
+	@EventListener(BoardTypeChangedEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public synchronized void reload() {
+		// 목록보다 버전을 먼저 읽음 (그 사이에 변경되면 다음 확인에서 다시 조회)
+		version = boardDao.selectBoardTypeVersion();
+		Map<String, BoardType> map = new LinkedHashMap<>();
+		for (BoardType type : boardDao.selectBoardTypeList()) {
+			map.put(type.getBoardCd(), type);
+		}
+		boardTypeMap = Collections.unmodifiableMap(map);
+		// key=value, BOARD_CODE=BoardType객체 (N=일반게시판, P=사진게시판)
+		application.setAttribute("boardTypeMap", boardTypeMap);
+		log.info("boardTypeMap : {}", boardTypeMap);
+	}
+	
+	// 다른 서버에서 변경된 게시판 유형 확인
+	@Scheduled(fixedDelay = 60 * 1000)
+	public void checkVersion() {
+		try {
+			String current = boardDao.selectBoardTypeVersion();
+			if (current != null && !current.equals(version)) {
+				log.info("게시판 유형 변경 감지 ({} -> {})", version, current);
+				eventPublisher.publishEvent(new BoardTypeChangedEvent());
+			}
+		} catch (RuntimeException e) {
+			log.error("게시판 유형 버전 확인 실패", e);
+		}
+	}
+	
+	public Map<String, BoardType> getBoardTypeMap() {
+		return boardTypeMap;
+	}
+	
+	public Set<String> getBoardCodes() {
+		return boardTypeMap.keySet();
+	}
+	
+	public BoardType get(String boardCd) {
+		return boardTypeMap.get(boardCd);
+	}
+}
@@ -0,0 +1,100 @@
+package com.kh.spring.board.model.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kh.spring.board.model.dao.BoardDao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 조회수 지연 반영(write-behind) 카운터
+ *  - 조회할 때마다 UPDATE BOARD SET COUNT = COUNT+1 을 수행하면 인기글 한 행에 row lock 경합이 발생
+ *  - 조회수 증가분은 게시글번호별 LongAdder에 메모리로만 누적하고, 주기적으로(및 서버 종료 시) 한번에 DB에 반영
+ *  - 아직 반영되지 않은 증가분(반영중인 증가분 포함)은 pending()으로 조회하여 화면에 보여줄 조회수에 더해준다
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BoardViewCounter {
+
+	private final BoardDao boardDao;
+	private final BoardDetailCache detailCache;
+
+	// key : 게시글번호, value : 아직 DB에 반영되지 않은 조회수 증가분
+	private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+	// key : 게시글번호, value : DB에 반영중인 증가분 (반영이 끝날 때까지 화면 조회수에 포함)
+	private final Map<Integer, Long> inFlight = new ConcurrentHashMap<>();
+
+	public void increase(int boardNo) {
+		// flush의 remove와 같은 락(bin)에서 증가시켜서 이미 꺼내간 adder에 더해지는 일이 없도록 compute 사용
+		pending.compute(boardNo, (k, adder) -> {
+			if (adder == null) {
+				adder = new LongAdder();
+			}
+			adder.increment();
+			return adder;
+		});
+	}
+
+	// DB에 반영되지 않은 조회수 (반영중인 증가분 포함)
+	public int pending(int boardNo) {
+		LongAdder adder = pending.get(boardNo);
+		return (int) ((adder == null ? 0 : adder.sum()) + inFlight.getOrDefault(boardNo, 0L));
+	}
+
+	// 10초마다 누적된 증가분을 DB에 반영
+	@Scheduled(fixedDelay = 10000)
+	public void flush() {
+		Map<Integer, Long> counts = new HashMap<>();
+		for (Integer boardNo : new ArrayList<>(pending.keySet())) {
+			// adder를 맵에서 먼저 꺼낸 뒤 합계를 읽음 => 이후 조회는 새 adder에 누적되므로 유실되지 않음
+			LongAdder adder = pending.remove(boardNo);
+			if (adder == null) {
+				continue;
+			}
+			long amount = adder.sum();
+			if (amount > 0) {
+				inFlight.merge(boardNo, amount, Long::sum);
+				counts.put(boardNo, amount);
+			}
+		}
+		counts.forEach((boardNo, amount) -> {
+			try {
+				boardDao.addCount(boardNo, amount);
+				// 캐시된 조회수에 더하지 않고 제거 (반영 직후 다시 조회해서 캐시한 값에 두 번 더해지지 않도록)
+				detailCache.evict(boardNo);
+			} catch (Exception e) {
+				// 반영 실패 시 다음 주기에 다시 시도할 수 있도록 증가분을 되돌려놓음
+				log.error("조회수 반영 실패 - boardNo : {}, amount : {}", boardNo, amount, e);
+				pending.compute(boardNo, (k, adder) -> {
+					if (adder == null) {
+						adder = new LongAdder();
+					}
+					adder.add(amount);
+					return adder;
+				});
+			} finally {
+				inFlight.computeIfPresent(boardNo, (k, v) -> v - amount == 0 ? null : v - amount);
+			}
+		});
+		if (!counts.isEmpty()) {
+			log.debug("조회수 반영 완료 : {}", counts);
+		}
+	}
+
+	// 서버 종료 시 남아있는 증가분 반영
+	@PreDestroy
+	public void destroy() {
+		flush();
+	}
+}
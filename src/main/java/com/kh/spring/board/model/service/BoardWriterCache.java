@@ -0,0 +1,53 @@
+package com.kh.spring.board.model.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Component;
+
+/*
+ * 게시글번호 -> 작성자번호 캐시
+ *  - 수정/첨부파일 다운로드 등 작성자 확인(BoardOwnerCheckInterceptor)마다 상세 조회 없이 작성자만 확인
+ *  - 작성자는 수정으로 바뀌지 않고 게시글 삭제 기능도 없으므로 제거하지 않음
+ *    (삭제 기능을 추가하면 커밋된 후 해당 게시글을 제거해야 함)
+ *  - LRU로 최대 MAX_SIZE개만 보관
+ */
+@Component
+public class BoardWriterCache {
+
+	private static final int MAX_SIZE = 10000;
+
+	// accessOrder=true : 오래 사용하지 않은 게시글부터 제거 (LRU)
+	private final Map<Integer, String> cache = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	// 캐시에 없으면 loader로 조회 후 보관
+	public String get(int boardNo, IntFunction<String> loader) {
+		synchronized (cache) {
+			String writer = cache.get(boardNo);
+			if (writer != null) {
+				return writer;
+			}
+		}
+		String writer = loader.apply(boardNo);
+		if (writer != null) {
+			synchronized (cache) {
+				cache.put(boardNo, writer);
+			}
+		}
+		return writer;
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.kh.spring.board.model.vo;
 
 import java.util.Date;
 
+import com.kh.spring.common.Utils;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -16,5 +18,13 @@ public class Board {
 	// 게시글 저장할때는 userNo값으로, 조회해 올 떄에는 userName값으로 하려고
 	private int count;
 	private Date createDate;
+	private Date modifyDate; // 등록/수정/삭제 시각 (검색 인덱스 동기화용)
 	private String status;
+	private String snippet; // 검색결과 미리보기 (검색 인덱스에서 하이라이트 처리한 내용 일부)
+	private String thumbnail; // 사진게시판 대표 이미지(IMG_LEVEL 0)의 CHANGE_NAME. 목록 조회 시에만 사용 (일반게시판은 null)
+	
+	// 목록에 표시할 썸네일 경로 (ImageProcessor가 생성)
+	public String getThumbName() {
+		return thumbnail == null ? null : Utils.variantName(thumbnail, Utils.THUMBNAIL);
+	}
 }
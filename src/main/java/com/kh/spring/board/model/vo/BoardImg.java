@@ -1,5 +1,7 @@
 package com.kh.spring.board.model.vo;
 
+import com.kh.spring.common.Utils;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -11,4 +13,24 @@ public class BoardImg {
 	private String changeName; // 파일의 수정된 이름 (웹 서버상에 저장되어 있는 이름 - 중복때매)
 	private int refBno; // 연관게시글번호 boardNo의 외래키
 	private int imgLevel; // 사진게시판에서 사용됨. 0레벨 : 썸네일용, 123 : 내부 상세보기 이미지용
+	
+	// 사진게시판 썸네일 및 너비별 이미지 경로 (원본과 같은 폴더에 ImageProcessor가 생성)
+	public String getThumbName() {
+		return changeName == null ? null : Utils.variantName(changeName, Utils.THUMBNAIL);
+	}
+	
+	// <img srcset> 속성값 (ex. /spring/xxx_w320.png 320w, /spring/xxx_w640.png 640w, ...)
+	public String getSrcset(String contextPath) {
+		if (changeName == null) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int width : Utils.IMAGE_WIDTHS) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(contextPath).append(Utils.variantName(changeName, "w" + width)).append(" ").append(width).append("w");
+		}
+		return sb.toString();
+	}
 }
@@ -11,6 +11,8 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.SessionAttributes;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
@@ -95,4 +97,19 @@ public class ChatController {
 		// 에 계속 필요한 정보기 때문에, 일일이 파라미터로 받는것보다 세션에 저장해두고 재사용
 		return "/chat/chatRoom";
 	}
+	
+	// 이전 대화 불러오기 : before(CM_NO)보다 이전 메세지를 JSON으로 반환 (before가 0이면 저장된 최근 메세지)
+	@GetMapping("/room/{chatRoomNo}/messages")
+	@ResponseBody
+	public List<ChatMessage> selectMessageList(
+			@PathVariable("chatRoomNo") int chatRoomNo,
+			@RequestParam(value = "before", defaultValue = "0") int before,
+			Authentication authentication
+			) {
+		Member loginUser = (Member) authentication.getPrincipal();
+		ChatRoomJoin join = new ChatRoomJoin();
+		join.setChatRoomNo(chatRoomNo);
+		join.setUserNo(loginUser.getUserNo());
+		return chatService.selectMessageList(join, before);
+	}
 }
@@ -1,6 +1,8 @@
 package com.kh.spring.chat.model.dao;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,10 +38,52 @@ public class ChatDao {
 		return session.selectList("chat.selctChatMessage", chatRoomNo);
 	}
 
+	/*
+	 * 채팅방 메세지 페이지 조회 (CM_NO 내림차순, 최대 limit개)
+	 *  - cmNo가 0이면 최근 메세지, 0보다 크면 cmNo보다 이전 메세지 (이전 대화 불러오기 커서)
+	 *  - CHAT_MESSAGE(CHAT_ROOM_NO, CM_NO) 인덱스를 역순으로 읽고 limit개에서 멈춤
+	 * SELECT * FROM (
+	 *     SELECT CM_NO, MESSAGE, TO_CHAR(CREATE_DATE, 'YYYY-MM-DD') CREATE_DATE, CHAT_ROOM_NO, USER_NO, USER_NAME
+	 *     FROM CHAT_MESSAGE JOIN MEMBER USING (USER_NO)
+	 *     WHERE CHAT_ROOM_NO = #{chatRoomNo} <if test="cmNo > 0">AND CM_NO &lt; #{cmNo}</if>
+	 *     ORDER BY CM_NO DESC
+	 * ) WHERE ROWNUM <= #{limit}
+	 */
+	public List<ChatMessage> selectMessageList(int chatRoomNo, int cmNo, int limit) {
+		Map<String, Object> param = new HashMap<>();
+		param.put("chatRoomNo", chatRoomNo);
+		param.put("cmNo", cmNo);
+		param.put("limit", limit);
+		return session.selectList("chat.selectMessageList", param);
+	}
+
+	// 메세지 번호 count개를 한 번에 발급
+	// SELECT SEQ_CM_NO.NEXTVAL FROM DUAL CONNECT BY LEVEL <= #{count}
+	public List<Integer> selectMessageNoList(int count) {
+		return session.selectList("chat.selectMessageNoList", count);
+	}
+
 	public int insertMessage(ChatMessage chatMessage) {
 		return session.insert("chat.insertMessage", chatMessage);
 	}
 
+	/*
+	 * 채팅 메세지 일괄 등록 (ChatMessageWriter에서 사용)
+	 *  - 한 건씩 insertMessage를 호출하지 않고 하나의 INSERT ALL 문장으로 저장 (반환값 : 등록된 행 수)
+	 *  - CM_NO는 selectMessageNoList로 미리 발급받아 지정 (받은 순서대로 증가, 최근 메세지 버퍼와 번호를 맞추기 위함)
+	 *    INSERT ALL 안에서는 시퀀스가 한 번만 증가하므로 NEXTVAL을 쓸 수 없음
+	 *  - CREATE_DATE는 서버가 메세지를 받은 시간 (ChatMessageWriter가 createDate에 Timestamp 문자열로 지정)
+	 * INSERT ALL
+	 * <foreach collection="list" item="cm">
+	 *     INTO CHAT_MESSAGE (CM_NO, MESSAGE, CREATE_DATE, CHAT_ROOM_NO, USER_NO)
+	 *     VALUES (#{cm.cmNo}, #{cm.message}, TO_TIMESTAMP(#{cm.createDate}, 'YYYY-MM-DD HH24:MI:SS.FF'), #{cm.chatRoomNo}, #{cm.userNo})
+	 * </foreach>
+	 * SELECT * FROM DUAL
+	 */
+	public int insertMessageList(List<ChatMessage> list) {
+		return session.insert("chat.insertMessageList", list);
+	}
+
 	public int exitChatRoom(ChatMessage chatMessage) {
 		return session.delete("chat.exitChatRoom", chatMessage);
 	}
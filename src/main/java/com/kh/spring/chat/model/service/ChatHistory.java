@@ -0,0 +1,214 @@
+package com.kh.spring.chat.model.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.kh.spring.chat.model.dao.ChatDao;
+import com.kh.spring.chat.model.vo.ChatMessage;
+
+import lombok.RequiredArgsConstructor;
+
+/*
+ * 채팅방별 최근 메세지 (ring buffer)
+ *  - 채팅방 입장 시 전체 대화내용을 조회하지 않고 최근 PAGE_SIZE개만 보여줌
+ *  - 메세지가 오가는 채팅방은 최근 메세지를 메모리에 보관하므로 입장할 때 DB를 조회하지 않음
+ *    버퍼는 메세지가 추가될 때 만들어지고, 처음 입장할 때 DB에서 최근 PAGE_SIZE개를 읽어서 채움
+ *    (입장만 하고 웹소켓을 연결하지 않는 경우 버퍼가 남지 않도록 입장 시에는 버퍼를 만들지 않음)
+ *  - 메세지는 받은 즉시(DB 저장 전) 추가되므로 아직 저장되지 않은 메세지도 입장 시 보임
+ *  - 채팅방에 접속한 사람이 없으면 제거 (evict)
+ *    단, 아직 저장되지 않은 메세지(ChatMessageWriter 대기열, 임시저장 파일)가 있으면
+ *    DB에서 다시 읽을 수 없으므로 모두 저장된 뒤(done)에 제거
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatHistory {
+
+	public static final int PAGE_SIZE = 50;
+
+	private final ChatDao dao;
+
+	private static class RoomBuffer {
+		private final ChatMessage[] items = new ChatMessage[PAGE_SIZE];
+		private final String[] ids = new String[PAGE_SIZE]; // 저장 대기중인 메세지의 id (DB에서 읽었거나 저장이 끝난 메세지는 null)
+		private int head; // 가장 오래된 메세지 위치
+		private int size;
+		private boolean loaded; // DB에서 이전 메세지를 읽었는지 여부
+		private boolean idle; // 접속한 사람이 없어 저장이 끝나면 제거할 버퍼
+		private boolean removed; // map에서 제거된 버퍼 (제거 직전에 가져간 경우 새 버퍼를 다시 가져옴)
+
+		private void add(String id, ChatMessage m) {
+			int index;
+			if (size < items.length) {
+				index = (head + size++) % items.length;
+			} else {
+				// 가득 찬 경우 가장 오래된 메세지를 덮어씀
+				index = head;
+				head = (head + 1) % items.length;
+			}
+			items[index] = m;
+			ids[index] = id;
+		}
+
+		private void clear() {
+			Arrays.fill(items, null);
+			Arrays.fill(ids, null);
+			head = 0;
+			size = 0;
+		}
+
+		private boolean hasPending() {
+			for (int i = 0; i < size; i++) {
+				if (ids[(head + i) % ids.length] != null) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private List<ChatMessage> toList() {
+			List<ChatMessage> list = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				list.add(items[(head + i) % items.length]);
+			}
+			return list;
+		}
+	}
+
+	// key : 채팅방 번호
+	private final Map<Integer, RoomBuffer> buffers = new ConcurrentHashMap<>();
+
+	/*
+	 * 최근 메세지 (오래된 순)
+	 *  - 버퍼가 없는 채팅방은 저장 대기중인 메세지도 없으므로 DB 조회결과를 그대로 반환
+	 *  - 제거 직전의 버퍼를 가져온 경우에도 버퍼의 메세지는 모두 저장된 상태이므로 그대로 반환해도 됨
+	 */
+	public List<ChatMessage> recent(int chatRoomNo) {
+		RoomBuffer buf = buffers.get(chatRoomNo);
+		if (buf == null) {
+			List<ChatMessage> list = dao.selectMessageList(chatRoomNo, 0, PAGE_SIZE);
+			Collections.reverse(list);
+			return list;
+		}
+		synchronized (buf) {
+			if (!buf.loaded) {
+				load(chatRoomNo, buf);
+			}
+			return buf.toList();
+		}
+	}
+
+	/*
+	 * DB의 최근 메세지 앞에 버퍼에 먼저 추가된 메세지를 이어붙임
+	 *  - 버퍼 생성 이후 받은 메세지가 이미 저장되어 DB 조회결과에 포함될 수 있으므로 CM_NO로 중복 제거
+	 *    (ChatMessageWriter는 저장 전에 메세지 id로 assign을 호출하므로 DB에 있는 메세지는 버퍼에도 번호가 있음.
+	 *     임시저장 파일을 거친 메세지도 id가 같으므로 버퍼의 메세지에 번호가 지정됨)
+	 */
+	private void load(int chatRoomNo, RoomBuffer buf) {
+		int count = buf.size;
+		String[] addedIds = new String[count];
+		ChatMessage[] added = new ChatMessage[count];
+		Set<Integer> numbers = new HashSet<>();
+		for (int i = 0; i < count; i++) {
+			int index = (buf.head + i) % buf.items.length;
+			addedIds[i] = buf.ids[index];
+			added[i] = buf.items[index];
+			numbers.add(added[i].getCmNo());
+		}
+		List<ChatMessage> list = dao.selectMessageList(chatRoomNo, 0, PAGE_SIZE);
+		Collections.reverse(list); // CM_NO 내림차순으로 조회되므로 오래된 순으로 뒤집음
+		buf.clear();
+		for (ChatMessage m : list) {
+			if (!numbers.contains(m.getCmNo())) {
+				buf.add(null, m);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			buf.add(addedIds[i], added[i]);
+		}
+		buf.loaded = true;
+	}
+
+	// 새 메세지 추가 (ChatMessageWriter에서 저장 대기열에 넣을 때 같은 순서로 호출)
+	public void append(String id, ChatMessage chatMessage) {
+		while (true) {
+			RoomBuffer buf = buffers.computeIfAbsent(chatMessage.getChatRoomNo(), k -> new RoomBuffer());
+			synchronized (buf) {
+				if (buf.removed) {
+					continue;
+				}
+				buf.idle = false;
+				buf.add(id, chatMessage);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * 저장 전 메세지 번호 지정 (ChatMessageWriter에서 호출)
+	 *  - 메세지 객체가 아닌 id로 찾으므로 임시저장 파일에서 다시 읽은 메세지도 버퍼의 메세지에 번호가 지정됨
+	 *  - 입장 중인 사용자가 번호가 없는 상태의 메세지를 보지 않도록 버퍼와 같은 락에서 지정
+	 */
+	public void assign(int chatRoomNo, String id, int cmNo) {
+		RoomBuffer buf = buffers.get(chatRoomNo);
+		if (buf == null) {
+			return;
+		}
+		synchronized (buf) {
+			for (int i = 0; i < buf.size; i++) {
+				int index = (buf.head + i) % buf.items.length;
+				if (id.equals(buf.ids[index])) {
+					buf.items[index].setCmNo(cmNo);
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * 저장이 끝난 메세지 표시 (ChatMessageWriter에서 저장 또는 dead letter로 옮긴 뒤 호출)
+	 *  - 접속한 사람이 없는 채팅방이면 마지막 메세지가 저장된 뒤 버퍼 제거
+	 */
+	public void done(int chatRoomNo, String id) {
+		RoomBuffer buf = buffers.get(chatRoomNo);
+		if (buf == null) {
+			return;
+		}
+		synchronized (buf) {
+			for (int i = 0; i < buf.size; i++) {
+				int index = (buf.head + i) % buf.ids.length;
+				if (id.equals(buf.ids[index])) {
+					buf.ids[index] = null;
+					break;
+				}
+			}
+			removeIfIdle(chatRoomNo, buf);
+		}
+	}
+
+	// 접속한 사람이 없는 채팅방 : 저장 대기중인 메세지가 없으면 바로 제거, 있으면 모두 저장된 뒤 done에서 제거
+	public void evict(int chatRoomNo) {
+		RoomBuffer buf = buffers.get(chatRoomNo);
+		if (buf == null) {
+			return;
+		}
+		synchronized (buf) {
+			buf.idle = true;
+			removeIfIdle(chatRoomNo, buf);
+		}
+	}
+
+	private void removeIfIdle(int chatRoomNo, RoomBuffer buf) {
+		if (buf.idle && !buf.hasPending()) {
+			buf.removed = true;
+			buffers.remove(chatRoomNo, buf);
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package com.kh.spring.chat.model.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kh.spring.chat.model.vo.ChatMessage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 채팅 메세지 지연 저장(write-behind)
+ *  - 메세지마다 INSERT 후 브로드캐스트하면 DB 응답시간만큼 메세지 전달이 늦어짐
+ *    => 브로드캐스트를 먼저 하고, 저장은 대기열에 넣어 별도 스레드에서 모아서 처리
+ *  - BATCH_SIZE개가 모이거나 FLUSH_INTERVAL(ms)이 지나면 한 트랜잭션으로 일괄 INSERT (group commit)
+ *  - 저장 스레드는 하나이고 받은 순서대로 저장하므로 채팅방별 메세지 순서(CM_NO)가 유지됨
+ *  - DB가 느리거나 장애로 메모리 대기열이 MEMORY_LIMIT를 넘으면 이후 메세지는 로컬 파일(ChatSpillFile)에 한 줄씩 기록
+ *    대기열을 모두 저장한 뒤 파일의 메세지를 BATCH_SIZE개씩 읽어서 저장하고, 저장이 끝난 위치만큼 파일의 offset을 기록
+ *    (서버가 재시작되어도 저장하지 못한 메세지는 파일에 남아있다가 다시 저장)
+ *  - DB 저장 실패 시 같은 묶음을 간격을 늘려가며 다시 시도 (뒤의 메세지가 먼저 저장되지 않도록)
+ *    단, 다시 시도해도 실패하는 메세지(제약조건 위반 등)는 dead letter 파일로 옮기고 다음 메세지를 저장
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatMessageWriter {
+
+	private static final int BATCH_SIZE = 100; // 한 번에 저장할 최대 메세지 수
+	private static final long FLUSH_INTERVAL = 200; // 첫 메세지 이후 최대 대기시간 (ms)
+	private static final int MEMORY_LIMIT = 10000; // 메모리 대기열 최대 크기
+	private static final long RETRY_DELAY = 1000; // 저장 실패 시 첫 재시도 간격
+	private static final long MAX_RETRY_DELAY = 30 * 1000;
+	private static final File SPILL_FILE = new File(
+			System.getProperty("catalina.base", System.getProperty("user.home")), "chat-spill/chat-message.jsonl");
+	private static final File DEAD_LETTER_FILE = new File(SPILL_FILE.getParentFile(), "chat-message.dead.jsonl");
+
+	private final ChatService chatService;
+	private final ChatHistory history;
+
+	/*
+	 * 저장 대기중인 메세지
+	 *  - id : 서버에서 발급한 메세지 id. 임시저장 파일에도 함께 기록되어 ChatHistory에서 같은 메세지를 찾는 데 사용
+	 *  - cmNo : 발급받은 메세지 번호 (0이면 미발급). 클라이언트가 보낸 값이 아닌 저장 스레드가 관리하는 값
+	 *  - message : 받은 메세지 (ChatHistory와 공유하므로 변경하지 않고 저장 시 복사본을 만들어 사용)
+	 */
+	private static class Entry {
+		private final String id;
+		private int cmNo;
+		private final ChatMessage message;
+		private final long spillEnd; // 파일에서 읽은 메세지이면 파일에서의 끝 위치, 메모리 대기열이면 -1
+
+		private Entry(String id, int cmNo, ChatMessage message, long spillEnd) {
+			this.id = id;
+			this.cmNo = cmNo;
+			this.message = message;
+			this.spillEnd = spillEnd;
+		}
+	}
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+	private final Deque<Entry> pending = new ArrayDeque<>(); // 저장 스레드 전용 (대기열보다 먼저 저장할 메세지)
+
+	private final Object spillLock = new Object();
+	private boolean spilling; // true이면 새 메세지는 파일에 기록
+	private ChatSpillFile spillFile;
+
+	private volatile boolean running = true;
+	private Thread flusher;
+
+	@PostConstruct
+	public void init() {
+		synchronized (spillLock) {
+			try {
+				spillFile = new ChatSpillFile(SPILL_FILE);
+			} catch (IOException e) {
+				throw new RuntimeException("채팅 메세지 임시저장 파일 열기 실패", e);
+			}
+			// 이전 실행에서 저장하지 못한 메세지가 있으면 그 뒤에 이어서 기록해야 순서가 유지됨
+			spilling = spillFile.hasRemaining();
+		}
+		flusher = new Thread(this::run, "chat-message-writer");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	public void enqueue(ChatMessage chatMessage) {
+		synchronized (spillLock) {
+			Entry entry = new Entry(UUID.randomUUID().toString(), 0, chatMessage, -1);
+			// 최근 메세지 버퍼에도 저장 순서와 같은 순서로 추가
+			history.append(entry.id, chatMessage);
+			if (!spilling && queue.size() < MEMORY_LIMIT) {
+				queue.add(entry);
+				return;
+			}
+			spilling = true;
+			try {
+				spillFile.append(toJson(entry));
+			} catch (IOException e) {
+				log.error("채팅 메세지 임시저장 실패 : {}", chatMessage, e);
+			}
+		}
+	}
+
+	private void run() {
+		long retryDelay = RETRY_DELAY;
+		while (running) {
+			try {
+				fill();
+				if (pending.isEmpty()) {
+					continue;
+				}
+				write(nextBatch());
+				retryDelay = RETRY_DELAY;
+			} catch (InterruptedException e) {
+				break;
+			} catch (RuntimeException e) {
+				log.error("채팅 메세지 저장 실패. {}ms 후 재시도 (대기 {}건)", retryDelay, pending.size() + queue.size(), e);
+				try {
+					Thread.sleep(retryDelay);
+				} catch (InterruptedException ie) {
+					break;
+				}
+				retryDelay = Math.min(MAX_RETRY_DELAY, retryDelay * 2);
+			}
+		}
+	}
+
+	// pending 앞쪽의 최대 BATCH_SIZE개 (저장에 성공해야 pending에서 제거)
+	private List<Entry> nextBatch() {
+		List<Entry> batch = new ArrayList<>();
+		for (Entry entry : pending) {
+			batch.add(entry);
+			if (batch.size() == BATCH_SIZE) {
+				break;
+			}
+		}
+		return batch;
+	}
+
+	/*
+	 * 묶음 저장 후 pending에서 제거
+	 *  - 일시적인 오류(연결 끊김, 타임아웃 등)는 그대로 던져서 같은 묶음을 나중에 다시 시도
+	 *  - 다시 시도해도 실패할 오류(제약조건 위반, 값이 너무 큼 등)는 한 건씩 다시 저장하고
+	 *    실패한 메세지만 dead letter 파일로 옮김 => 잘못된 메세지 하나 때문에 전체 저장이 멈추지 않음
+	 */
+	private void write(List<Entry> batch) {
+		assignNumbers(batch);
+		List<ChatMessage> messages = new ArrayList<>();
+		for (Entry entry : batch) {
+			messages.add(toRow(entry));
+		}
+		try {
+			chatService.insertMessageList(messages);
+			removeHead(batch.size());
+			return;
+		} catch (RuntimeException e) {
+			if (!isPermanent(e)) {
+				throw e;
+			}
+			log.warn("채팅 메세지 일괄 저장 실패. 한 건씩 다시 저장 ({}건)", batch.size(), e);
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			try {
+				chatService.insertMessageList(Collections.singletonList(messages.get(i)));
+			} catch (RuntimeException e) {
+				if (!isPermanent(e)) {
+					throw e;
+				}
+				deadLetter(toJson(batch.get(i)), e);
+			}
+			removeHead(1);
+		}
+	}
+
+	/*
+	 * 번호가 없는 메세지에 메세지 번호(CM_NO) 발급 (한 번의 조회로 묶음 전체의 번호를 받음)
+	 *  - 다시 시도하는 메세지는 이전에 발급받은 번호를 그대로 사용
+	 *  - INSERT 전에 ChatHistory에도 지정하므로 DB에 저장된 메세지는 최근 메세지 버퍼에도 번호가 있음
+	 */
+	private void assignNumbers(List<Entry> batch) {
+		List<Entry> unnumbered = new ArrayList<>();
+		for (Entry entry : batch) {
+			if (entry.cmNo == 0) {
+				unnumbered.add(entry);
+			}
+		}
+		if (unnumbered.isEmpty()) {
+			return;
+		}
+		List<Integer> numbers = chatService.selectMessageNoList(unnumbered.size());
+		for (int i = 0; i < unnumbered.size(); i++) {
+			Entry entry = unnumbered.get(i);
+			entry.cmNo = numbers.get(i);
+			history.assign(entry.message.getChatRoomNo(), entry.id, entry.cmNo);
+		}
+	}
+
+	// INSERT용 복사본
+	private ChatMessage toRow(Entry entry) {
+		ChatMessage row = new ChatMessage();
+		row.setCmNo(entry.cmNo);
+		row.setMessage(entry.message.getMessage());
+		row.setChatRoomNo(entry.message.getChatRoomNo());
+		row.setUserNo(entry.message.getUserNo());
+		row.setUserName(entry.message.getUserName());
+		long sendTime = entry.message.getSendTime() > 0 ? entry.message.getSendTime() : System.currentTimeMillis();
+		row.setSendTime(sendTime);
+		row.setCreateDate(new Timestamp(sendTime).toString()); // CREATE_DATE로 저장 (yyyy-mm-dd hh:mm:ss.fff)
+		return row;
+	}
+
+	// 저장이 끝난 메세지를 pending에서 제거하고, 파일에서 읽은 메세지이면 파일의 저장 완료 위치도 기록
+	private void removeHead(int count) {
+		long spillEnd = -1;
+		for (int i = 0; i < count; i++) {
+			Entry entry = pending.pollFirst();
+			spillEnd = Math.max(spillEnd, entry.spillEnd);
+			history.done(entry.message.getChatRoomNo(), entry.id);
+		}
+		if (spillEnd < 0) {
+			return;
+		}
+		synchronized (spillLock) {
+			try {
+				spillFile.commit(spillEnd);
+			} catch (IOException e) {
+				// 위치를 기록하지 못하면 재시작 시 해당 묶음이 다시 저장될 수 있음
+				log.error("채팅 메세지 임시저장 파일 위치 기록 실패", e);
+			}
+		}
+	}
+
+	// 같은 데이터로 다시 시도해도 실패하는 오류인지 확인 (SQLState 22 : 데이터 오류, 23 : 무결성 제약조건 위반)
+	static boolean isPermanent(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof DataIntegrityViolationException) {
+				return true;
+			}
+			if (t instanceof SQLException) {
+				for (SQLException se = (SQLException) t; se != null; se = se.getNextException()) {
+					if (se instanceof SQLNonTransientConnectionException) {
+						return false;
+					}
+					String state = se.getSQLState();
+					if (se instanceof SQLIntegrityConstraintViolationException || se instanceof SQLDataException
+							|| (state != null && (state.startsWith("22") || state.startsWith("23")))
+							|| se.getErrorCode() == 12899 || se.getErrorCode() == 1438) { // ORA-12899, ORA-01438 : 값이 너무 큼
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	// 임시저장 파일, dead letter 파일의 한 줄 : {"id":"...","cmNo":0,"message":{...}}
+	private String toJson(Entry entry) {
+		Map<String, Object> record = new LinkedHashMap<>();
+		record.put("id", entry.id);
+		record.put("cmNo", entry.cmNo);
+		record.put("message", entry.message);
+		try {
+			return objectMapper.writeValueAsString(record);
+		} catch (IOException e) {
+			return String.valueOf(record);
+		}
+	}
+
+	private Entry fromJson(String line, long spillEnd) throws IOException {
+		JsonNode record = objectMapper.readTree(line);
+		if (record == null || !record.path("message").isObject()) {
+			throw new IOException("임시저장된 채팅 메세지 형식 오류");
+		}
+		return new Entry(record.path("id").asText(), record.path("cmNo").asInt(),
+				objectMapper.treeToValue(record.get("message"), ChatMessage.class), spillEnd);
+	}
+
+	// 저장할 수 없는 메세지는 버리지 않고 별도 파일에 남겨둠 (원인 확인 후 수동 처리)
+	private void deadLetter(String content, Exception e) {
+		log.error("채팅 메세지 저장 불가. dead letter로 이동 : {}", content, e);
+		try {
+			DEAD_LETTER_FILE.getParentFile().mkdirs();
+			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(DEAD_LETTER_FILE, true), StandardCharsets.UTF_8))) {
+				writer.write(content);
+				writer.newLine();
+			}
+		} catch (IOException ie) {
+			log.error("dead letter 기록 실패 : {}", content, ie);
+		}
+	}
+
+	// 저장할 메세지 채우기 : 첫 메세지가 온 뒤 BATCH_SIZE개가 되거나 FLUSH_INTERVAL이 지날 때까지 모음
+	private void fill() throws InterruptedException {
+		if (pending.size() >= BATCH_SIZE) {
+			return;
+		}
+		if (pending.isEmpty() && queue.isEmpty()) {
+			// 파일에 남은 메세지는 기다리지 않고 바로 읽어서 저장
+			readSpill();
+			if (!pending.isEmpty()) {
+				return;
+			}
+		}
+		Entry first = pending.isEmpty() ? queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS) : queue.poll();
+		if (first == null) {
+			return;
+		}
+		pending.add(first);
+		long deadline = System.currentTimeMillis() + FLUSH_INTERVAL;
+		while (pending.size() < BATCH_SIZE) {
+			long remaining = deadline - System.currentTimeMillis();
+			Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+			if (next == null) {
+				break;
+			}
+			pending.add(next);
+			queue.drainTo(pending, BATCH_SIZE - pending.size());
+		}
+	}
+
+	/*
+	 * 메모리 대기열을 모두 저장한 뒤에만 파일의 메세지를 읽음 (파일의 메세지가 더 나중에 받은 메세지)
+	 *  - 한 번에 BATCH_SIZE줄만 읽으므로 장애가 길어져 파일이 커져도 메모리 사용량은 일정함
+	 *  - 파일은 저장이 끝난 만큼만 offset을 옮기고, 모두 저장되면 삭제 후 다시 메모리 대기열을 사용
+	 */
+	private void readSpill() {
+		synchronized (spillLock) {
+			if (!spilling || !queue.isEmpty()) {
+				return;
+			}
+			try {
+				List<ChatSpillFile.Line> lines = spillFile.read(BATCH_SIZE);
+				if (lines.isEmpty()) {
+					// pending이 비어있을 때만 호출되므로 읽은 메세지는 모두 처리된 상태
+					if (spillFile.finishIfDrained()) {
+						spilling = false;
+						log.info("임시저장된 채팅 메세지 저장 완료");
+					}
+					return;
+				}
+				for (ChatSpillFile.Line line : lines) {
+					try {
+						pending.add(fromJson(line.getText(), line.getEnd()));
+					} catch (IOException e) {
+						// 읽을 수 없는 줄(기록 도중 종료 등)은 건너뜀. 위치는 다음 메세지 저장 시 함께 기록됨
+						deadLetter(line.getText(), e);
+					}
+				}
+			} catch (IOException e) {
+				log.error("임시저장된 채팅 메세지 읽기 실패", e);
+			}
+		}
+	}
+
+	// 서버 종료 시 남은 메세지 저장. 저장하지 못하면 파일 앞쪽에 기록해두고 다음 실행 때 저장
+	@PreDestroy
+	public void destroy() throws InterruptedException {
+		running = false;
+		flusher.interrupt();
+		flusher.join(5000);
+		queue.drainTo(pending);
+		try {
+			while (!pending.isEmpty()) {
+				write(nextBatch()); // 저장된 메세지만 pending에서 제거됨
+			}
+		} catch (RuntimeException e) {
+			log.error("종료 중 채팅 메세지 저장 실패. {}건 파일로 저장", pending.size(), e);
+			spillRemaining();
+		}
+		synchronized (spillLock) {
+			try {
+				spillFile.close();
+			} catch (IOException e) {
+				log.error("채팅 메세지 임시저장 파일 닫기 실패", e);
+			}
+		}
+	}
+
+	// 메모리에만 있는 메세지를 파일의 저장되지 않은 내용 앞에 기록 (파일에서 읽은 메세지는 이미 파일에 남아있음)
+	private void spillRemaining() {
+		List<String> head = new ArrayList<>();
+		try {
+			for (Entry entry : pending) {
+				if (entry.spillEnd < 0) {
+					head.add(toJson(entry));
+				}
+			}
+			synchronized (spillLock) {
+				spillFile.rewrite(head);
+			}
+		} catch (IOException e) {
+			log.error("채팅 메세지 파일 저장 실패. {}건 유실", head.size(), e);
+		}
+	}
+}
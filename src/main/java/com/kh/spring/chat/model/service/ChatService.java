@@ -14,8 +14,14 @@ public interface ChatService {
 
 	List<ChatMessage> joinChatRoom(ChatRoomJoin join);
 
+	List<ChatMessage> selectMessageList(ChatRoomJoin join, int cmNo);
+
 	int insertMessage(ChatMessage chatMessage);
 
+	List<Integer> selectMessageNoList(int count);
+
+	int insertMessageList(List<ChatMessage> list);
+
 	void exitChatRoom(ChatMessage message);
 
 }
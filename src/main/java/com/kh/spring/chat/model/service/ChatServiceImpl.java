@@ -1,5 +1,7 @@
 package com.kh.spring.chat.model.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +22,9 @@ public class ChatServiceImpl implements ChatService{
 	
 	@Autowired
 	private ChatDao dao;
+	
+	@Autowired
+	private ChatHistory history; // 채팅방별 최근 메세지
 
 	@Override
 	public List<ChatRoom> selectChatRoomList() {
@@ -42,10 +47,22 @@ public class ChatServiceImpl implements ChatService{
 			// 참여자 정보를 Chat_room_join에 Insert
 			result = dao.joinChatRoom(join);
 		}
-		// insert 성공시 list를 반환, 실패시 null 반환
+		// insert 성공시 최근 메세지 list를 반환, 실패시 null 반환
+		// 전체 대화내용이 아닌 최근 ChatHistory.PAGE_SIZE개만 조회 (이전 메세지는 selectMessageList로 불러옴)
 		if (result > 0) {
-			list = dao.selctChatMessage(join.getChatRoomNo());
+			list = history.recent(join.getChatRoomNo());
+		}
+		return list;
+	}
+
+	// 이전 대화 불러오기 : cmNo보다 이전 메세지 PAGE_SIZE개 (채팅방 참여자만 조회 가능)
+	@Override
+	public List<ChatMessage> selectMessageList(ChatRoomJoin join, int cmNo) {
+		if (dao.joinCheck(join) == 0) {
+			throw new RuntimeException("채팅방 참여자가 아닙니다");
 		}
+		List<ChatMessage> list = dao.selectMessageList(join.getChatRoomNo(), cmNo, ChatHistory.PAGE_SIZE);
+		Collections.reverse(list);
 		return list;
 	}
 
@@ -55,6 +72,26 @@ public class ChatServiceImpl implements ChatService{
 		return dao.insertMessage(chatMessage);
 	}
 
+	// 메세지 번호 count개 발급 (오름차순)
+	@Override
+	public List<Integer> selectMessageNoList(int count) {
+		List<Integer> numbers = new ArrayList<>(dao.selectMessageNoList(count));
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	@Override
+	@Transactional(rollbackFor = Exception.class)
+	public int insertMessageList(List<ChatMessage> list) {
+		// CM_NO는 ChatMessageWriter가 selectMessageNoList로 미리 발급받아 지정한 값을 사용
+		// 한 트랜잭션으로 묶어서 커밋 (일부만 저장되면 재시도 시 중복 저장되므로 하나라도 실패하면 전체 롤백)
+		int result = dao.insertMessageList(list);
+		if (result != list.size()) {
+			throw new RuntimeException("채팅 메세지 저장 실패");
+		}
+		return result;
+	}
+
 	@Override
 	@Transactional(rollbackFor = Exception.class)
 	public void exitChatRoom(ChatMessage chatMessage) {
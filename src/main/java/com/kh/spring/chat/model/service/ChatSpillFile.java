@@ -0,0 +1,207 @@
+package com.kh.spring.chat.model.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import lombok.Getter;
+
+/*
+ * 채팅 메세지 임시저장 파일 (ChatMessageWriter 전용)
+ *  - 한 줄에 메세지 하나(JSON). 첫 줄은 파일을 구분하는 헤더(#UUID)
+ *  - 읽을 때는 정해진 개수만큼만 읽고, DB에 저장이 끝난 위치(offset)는 별도 파일(.offset)에 "헤더 위치"로 기록
+ *    => 저장 도중 서버가 종료되어도 저장하지 못한 메세지는 파일에 남아있음 (저장 후 위치 기록 전에 종료되면 한 묶음이 중복 저장될 수 있음)
+ *  - 파일을 다시 쓰는 경우(rewrite) 헤더가 바뀌므로 이전 파일의 offset은 무시됨 (파일 교체와 offset 초기화를 rename 한 번으로 처리)
+ *  - 모든 메서드는 호출하는 쪽(ChatMessageWriter.spillLock)에서 동기화
+ */
+class ChatSpillFile {
+
+	@Getter
+	static class Line {
+		private final String text;
+		private final long end; // 이 줄의 끝 위치 (저장 완료 시 commit에 전달)
+
+		private Line(String text, long end) {
+			this.text = text;
+			this.end = end;
+		}
+	}
+
+	private final File file;
+	private final File offsetFile;
+
+	private String header; // 현재 파일의 헤더. null이면 파일 없음
+	private long committed; // DB 저장이 끝난 위치
+	private long readPosition; // 다음에 읽을 위치
+	private OutputStream out;
+
+	ChatSpillFile(File file) throws IOException {
+		this.file = file;
+		this.offsetFile = new File(file.getParentFile(), file.getName() + ".offset");
+		open();
+	}
+
+	private void open() throws IOException {
+		if (!file.exists() || file.length() == 0) {
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			String first = raf.readLine();
+			if (first == null || !first.startsWith("#")) {
+				throw new IOException("채팅 메세지 임시저장 파일 형식 오류 : " + file);
+			}
+			header = first;
+			long start = raf.getFilePointer();
+			committed = start;
+			if (offsetFile.exists()) {
+				String[] saved = new String(Files.readAllBytes(offsetFile.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+				if (saved.length == 2 && saved[0].equals(header)) {
+					committed = Math.max(start, Math.min(Long.parseLong(saved[1]), raf.length()));
+				}
+			}
+			// 기록 도중 종료되어 줄바꿈 없이 끝난 경우 줄을 끝내줌 (잘린 줄은 읽을 때 dead letter로 처리됨)
+			if (raf.length() > start) {
+				raf.seek(raf.length() - 1);
+				if (raf.read() != '\n') {
+					raf.write('\n');
+				}
+			}
+		}
+		readPosition = committed;
+	}
+
+	// 아직 저장되지 않은 메세지가 있는지
+	boolean hasRemaining() {
+		return header != null && file.length() > committed;
+	}
+
+	void append(String line) throws IOException {
+		if (out == null) {
+			if (header == null) {
+				file.getParentFile().mkdirs();
+				header = newHeader();
+				Files.write(file.toPath(), (header + "\n").getBytes(StandardCharsets.UTF_8));
+				committed = readPosition = file.length();
+			}
+			out = new FileOutputStream(file, true);
+		}
+		// 한 번의 write로 기록 (flush를 기다리는 버퍼 없음 => 프로세스가 종료되어도 남음)
+		out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	// readPosition부터 최대 max줄을 읽음 (저장 완료 처리는 commit으로 따로 함)
+	List<Line> read(int max) throws IOException {
+		List<Line> lines = new ArrayList<>();
+		if (header == null) {
+			return lines;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			channel.position(readPosition);
+			InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			long position = readPosition;
+			int b;
+			while (lines.size() < max && (b = in.read()) != -1) {
+				position++;
+				if (b != '\n') {
+					buf.write(b);
+					continue;
+				}
+				lines.add(new Line(new String(buf.toByteArray(), StandardCharsets.UTF_8), position));
+				buf.reset();
+				readPosition = position;
+			}
+		}
+		return lines;
+	}
+
+	// end 위치까지 DB 저장 완료
+	void commit(long end) throws IOException {
+		if (header == null || end <= committed) {
+			return;
+		}
+		committed = end;
+		File temp = new File(offsetFile.getParentFile(), offsetFile.getName() + ".tmp");
+		Files.write(temp.toPath(), (header + " " + end).getBytes(StandardCharsets.UTF_8));
+		Files.move(temp.toPath(), offsetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * 읽은 줄이 모두 처리된 상태에서 호출. 더 읽을 내용이 없으면 파일을 삭제하고 true 반환
+	 *  - 마지막 줄이 dead letter로 처리된 경우에도 끝날 수 있도록 읽은 위치까지 저장 완료로 기록
+	 */
+	boolean finishIfDrained() throws IOException {
+		if (header == null) {
+			return true;
+		}
+		commit(readPosition);
+		if (file.length() > readPosition) {
+			return false;
+		}
+		close();
+		Files.deleteIfExists(file.toPath());
+		Files.deleteIfExists(offsetFile.toPath());
+		header = null;
+		committed = readPosition = 0;
+		return true;
+	}
+
+	/*
+	 * head를 저장되지 않은 내용 앞에 붙여서 파일을 새로 씀 (서버 종료 시 메모리에 남은 메세지 보관용)
+	 *  - 새 헤더로 임시파일을 만든 뒤 rename => 중간에 종료되어도 이전 파일과 offset이 그대로 유효함
+	 */
+	void rewrite(List<String> head) throws IOException {
+		close();
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		String newHeader = newHeader();
+		try (OutputStream os = new FileOutputStream(temp)) {
+			os.write((newHeader + "\n").getBytes(StandardCharsets.UTF_8));
+			for (String line : head) {
+				os.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			if (header != null) {
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					channel.position(committed);
+					copy(Channels.newInputStream(channel), os);
+				}
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		header = newHeader;
+		committed = readPosition = (newHeader + "\n").getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private void copy(InputStream in, OutputStream os) throws IOException {
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			os.write(buf, 0, n);
+		}
+	}
+
+	private String newHeader() {
+		return "#" + UUID.randomUUID();
+	}
+
+	void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+}
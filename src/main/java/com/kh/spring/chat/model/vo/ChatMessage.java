@@ -19,4 +19,7 @@ public class ChatMessage {
 	private MessageType type;
 	
 	private String userName;
+	
+	// 서버가 메세지를 받은 시간(ms). 저장이 지연되므로 CREATE_DATE는 이 값으로 기록
+	private long sendTime;
 }
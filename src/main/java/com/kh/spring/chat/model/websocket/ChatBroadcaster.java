@@ -0,0 +1,122 @@
+package com.kh.spring.chat.model.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kh.spring.chat.model.vo.ChatMessage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 채팅 메세지 브로드캐스트
+ *  - 메세지는 한 번만 JSON으로 변환하여 하나의 TextMessage를 모든 세션이 공유 (참여자 수만큼 변환하지 않음)
+ *  - 실제 전송은 크기가 제한된 스레드풀에서 수행 => 느린 클라이언트가 있어도 메세지를 보낸 사용자의 스레드는 바로 반환
+ *  - 세션마다 ChatSessionSender(전송 버퍼)를 두고, 세션별로 한 번에 하나의 전송 작업만 스레드풀에 예약
+ *    => 세션별 전송 순서가 보장되고, 느린 클라이언트는 자기 버퍼 한도 안에서만 메모리를 사용
+ *    전송은 비동기이므로 스레드풀의 스레드는 전송 완료를 기다리지 않음 (느린 클라이언트가 스레드를 모두 차지하지 않음)
+ *  - 조용한 채팅방에서는 새 메세지가 오지 않으므로 1초마다 전체 세션을 감시
+ *    - 전송이 멈춘 세션은 별도 스레드에서 연결을 끊음 (종료 처리도 블로킹될 수 있으므로 스케쥴러 스레드에서 하지 않음)
+ *    - 스레드풀 대기열 초과로 예약하지 못한 세션은 다시 예약
+ *  - 한도는 프로퍼티로 설정 (chat.send.timeLimit(ms), chat.send.bufferSizeLimit(byte), chat.send.overflowPolicy)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatBroadcaster {
+
+	@Value("${chat.send.timeLimit:10000}")
+	private long sendTimeLimit; // 메세지 하나의 최대 전송시간 (기본 10초)
+
+	@Value("${chat.send.bufferSizeLimit:524288}")
+	private int bufferSizeLimit; // 세션별 전송 대기 최대 크기 (기본 512KB)
+
+	@Value("${chat.send.overflowPolicy:DROP_OLDEST}")
+	private ChatSessionSender.OverflowPolicy overflowPolicy;
+
+	private final ChatRoomRegistry roomRegistry;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	// key : 세션 ID, value : 세션별 전송 버퍼
+	private final Map<String, ChatSessionSender> senders = new ConcurrentHashMap<>();
+
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+			4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10000),
+			new ThreadPoolExecutor.AbortPolicy());
+
+	// 전송이 멈춘 세션 종료 전용
+	private final ExecutorService closer = Executors.newSingleThreadExecutor();
+
+	// 웹소켓 연결 시 전송 버퍼 생성
+	public void register(WebSocketSession session) {
+		senders.put(session.getId(), new ChatSessionSender(session, sendTimeLimit, bufferSizeLimit, overflowPolicy));
+	}
+
+	// 웹소켓 연결 종료 시 전송 버퍼 제거 (남은 메세지는 버림)
+	public void unregister(WebSocketSession session) {
+		ChatSessionSender sender = senders.remove(session.getId());
+		if (sender != null) {
+			sender.close(null);
+		}
+	}
+
+	public void broadcast(ChatMessage chatMessage) throws JsonProcessingException {
+		TextMessage message = new TextMessage(objectMapper.writeValueAsString(chatMessage)); // VO -> JSON (1번만)
+		for (WebSocketSession session : roomRegistry.getSessions(chatMessage.getChatRoomNo())) {
+			ChatSessionSender sender = senders.get(session.getId());
+			if (sender != null && sender.enqueue(message)) {
+				scheduleFlush(sender);
+			}
+		}
+	}
+
+	private void scheduleFlush(ChatSessionSender sender) {
+		try {
+			// 남은 메세지는 다른 세션 작업 뒤에 이어서 전송
+			executor.execute(() -> sender.flush(() -> scheduleFlush(sender)));
+		} catch (RejectedExecutionException e) {
+			// 스레드풀 대기열이 가득 찬 경우 메세지는 버퍼에 남겨두고 감시 스케쥴러(checkSenders)에서 다시 예약
+			sender.cancelFlush();
+			log.warn("메세지 전송 예약 실패 (대기열 초과)");
+		}
+	}
+
+	// 세션 감시 : 전송이 멈춘 세션의 연결을 끊고, 예약에 실패한 세션은 다시 예약
+	@Scheduled(fixedDelay = 1000)
+	public void checkSenders() {
+		long now = System.currentTimeMillis();
+		for (ChatSessionSender sender : senders.values()) {
+			if (sender.isClosed()) {
+				continue;
+			}
+			if (sender.isSendTimedOut(now)) {
+				closer.execute(() -> sender.close("전송시간 초과"));
+			} else if (sender.retryFlush()) {
+				scheduleFlush(sender);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+		closer.shutdown();
+	}
+}
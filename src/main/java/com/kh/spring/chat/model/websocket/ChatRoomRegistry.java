@@ -0,0 +1,57 @@
+package com.kh.spring.chat.model.websocket;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+/*
+ * 채팅방별 웹소켓 세션 저장소
+ *  - 여러 연결 스레드에서 동시에 입장/퇴장하므로 ConcurrentHashMap으로 관리
+ *  - 채팅방의 세션 목록은 CopyOnWriteArraySet : 입장/퇴장(쓰기)보다 메세지 전송(순회)이 훨씬 많으므로
+ *    순회할 때 락 없이 그 시점의 목록을 그대로 사용할 수 있는 방식을 사용
+ *  - 입장/퇴장은 compute로 처리하여 "빈 채팅방 제거"와 "새 세션 추가"가 동시에 일어나도
+ *    추가한 세션이 제거된 목록에 들어가 사라지는 일이 없도록 함
+ */
+@Component
+public class ChatRoomRegistry {
+
+	// key : 채팅방 번호, value : 채팅방에 접속중인 세션 목록
+	private final ConcurrentMap<Integer, Set<WebSocketSession>> rooms = new ConcurrentHashMap<>();
+
+	public void join(int chatRoomNo, WebSocketSession session) {
+		rooms.compute(chatRoomNo, (k, sessions) -> {
+			if (sessions == null) {
+				sessions = new CopyOnWriteArraySet<>();
+			}
+			sessions.add(session);
+			return sessions;
+		});
+	}
+
+	// 퇴장 처리. 마지막 사용자가 나가면 같은 연산 안에서 채팅방을 제거(null 반환)
+	public void leave(int chatRoomNo, WebSocketSession session) {
+		rooms.computeIfPresent(chatRoomNo, (k, sessions) -> {
+			sessions.remove(session);
+			return sessions.isEmpty() ? null : sessions;
+		});
+	}
+
+	// 채팅방에 접속중인 세션 목록 (순회 중 입장/퇴장이 있어도 안전)
+	public Set<WebSocketSession> getSessions(int chatRoomNo) {
+		Set<WebSocketSession> sessions = rooms.get(chatRoomNo);
+		return sessions == null ? Collections.emptySet() : sessions;
+	}
+
+	public boolean isActive(int chatRoomNo) {
+		return rooms.containsKey(chatRoomNo);
+	}
+
+	public int getRoomCount() {
+		return rooms.size();
+	}
+}
@@ -0,0 +1,250 @@
+package com.kh.spring.chat.model.websocket;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendResult;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.standard.StandardWebSocketSession;
+
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 세션별 전송 버퍼 (스프링의 ConcurrentWebSocketSessionDecorator와 같은 역할)
+ *  - WebSocketSession.sendMessage는 동시에 호출할 수 없으므로 메세지를 세션별 대기열에 넣고
+ *    한 번에 하나의 작업만 대기열을 비우도록(flush) 함 => 세션별 전송 순서 보장
+ *  - 전송은 비동기(RemoteEndpoint.Async)로 하고, 전송이 끝나면 다음 메세지를 예약
+ *    => 느린 클라이언트가 있어도 전송 스레드를 붙잡지 않음 (sendMessage는 블로킹이라 스레드 수만큼만 멈춰도 모든 채팅방의 전송이 멈춤)
+ *    비동기 전송을 쓸 수 없는 세션(SockJS 등)만 sendMessage로 전송
+ *  - 느린 클라이언트 때문에 대기열이 무한히 쌓이지 않도록 크기(bufferSizeLimit)와 시간(sendTimeLimit)을 제한
+ *    - 크기 초과 : OverflowPolicy에 따라 오래된 메세지부터 버리거나(DROP_OLDEST) 연결을 끊음(DISCONNECT)
+ *    - 하나의 메세지 전송이 sendTimeLimit 이상 끝나지 않으면 응답하지 않는 클라이언트로 보고 연결을 끊음
+ *      (비동기 전송은 컨테이너의 전송 타임아웃으로, 그 외에는 새 메세지가 올 때와 ChatBroadcaster의 감시 스케쥴러에서 확인)
+ */
+@Slf4j
+public class ChatSessionSender {
+
+	public enum OverflowPolicy {
+		DROP_OLDEST, DISCONNECT
+	}
+
+	private static final int FLUSH_BATCH = 32; // 한 번에 보낼 최대 메세지 수 (다른 세션도 스레드를 쓸 수 있도록)
+
+	private final WebSocketSession session;
+	private final long sendTimeLimit; // ms
+	private final int bufferSizeLimit; // byte
+	private final OverflowPolicy overflowPolicy;
+	private final RemoteEndpoint.Async remote; // 비동기 전송. 사용할 수 없으면 null
+
+	private final Deque<TextMessage> buffer = new ArrayDeque<>();
+	private int bufferSize;
+	private boolean flushing; // flush가 예약되었거나 실행중인지 여부
+	private volatile long sendStartTime; // 현재 전송 시작시간 (전송중이 아니면 0)
+	private volatile boolean closed;
+	private long dropped; // 버려진 메세지 수
+
+	public ChatSessionSender(WebSocketSession session, long sendTimeLimit, int bufferSizeLimit,
+			OverflowPolicy overflowPolicy) {
+		this.session = session;
+		this.sendTimeLimit = sendTimeLimit;
+		this.bufferSizeLimit = bufferSizeLimit;
+		this.overflowPolicy = overflowPolicy;
+		this.remote = asyncRemote(session, sendTimeLimit);
+	}
+
+	// 표준 웹소켓 세션이면 비동기 전송 객체 (SockJS 세션은 메세지 형식이 다르므로 사용하지 않음)
+	private static RemoteEndpoint.Async asyncRemote(WebSocketSession session, long sendTimeLimit) {
+		if (!(session instanceof StandardWebSocketSession)) {
+			return null;
+		}
+		javax.websocket.Session nativeSession = ((StandardWebSocketSession) session).getNativeSession();
+		if (nativeSession == null) {
+			return null;
+		}
+		RemoteEndpoint.Async async = nativeSession.getAsyncRemote();
+		async.setSendTimeout(sendTimeLimit); // 시간 안에 전송되지 않으면 실패로 완료됨
+		return async;
+	}
+
+	/*
+	 * 메세지를 대기열에 추가
+	 *  - 반환값이 true이면 호출한 쪽에서 flush()를 실행해야 함 (이미 flush 중이면 false)
+	 */
+	public boolean enqueue(TextMessage message) {
+		boolean overflow;
+		synchronized (this) {
+			if (closed) {
+				return false;
+			}
+			buffer.addLast(message);
+			bufferSize += message.getPayloadLength();
+			overflow = bufferSize > bufferSizeLimit;
+			if (overflow && overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+				while (bufferSize > bufferSizeLimit && buffer.size() > 1) {
+					bufferSize -= buffer.pollFirst().getPayloadLength();
+					dropped++;
+				}
+				overflow = false;
+			}
+		}
+		if (isSendTimedOut(System.currentTimeMillis())) {
+			close("전송시간 초과");
+			return false;
+		}
+		if (overflow) {
+			close("전송 대기열 초과");
+			return false;
+		}
+		synchronized (this) {
+			if (flushing) {
+				return false;
+			}
+			flushing = true;
+			return true;
+		}
+	}
+
+	/*
+	 * 대기열의 메세지를 순서대로 전송
+	 *  - 비동기 전송 : 메세지 하나를 전송 요청하고 바로 반환. 전송이 끝나면 남은 메세지가 있을 때 next를 실행
+	 *  - 블로킹 전송 : 최대 FLUSH_BATCH개를 전송하고, 남은 메세지가 있으면 next를 실행
+	 *  - next : 다음 flush를 스레드풀에 예약 (다른 세션의 전송 작업 뒤에 이어서 전송)
+	 */
+	public void flush(Runnable next) {
+		if (remote != null) {
+			TextMessage message = poll();
+			if (message == null) {
+				return;
+			}
+			sendStartTime = System.currentTimeMillis();
+			try {
+				remote.sendText(message.getPayload(), result -> onSent(result, next));
+			} catch (IllegalStateException e) {
+				sendStartTime = 0;
+				log.debug("메세지 전송 실패. 세션 ID : {}", session.getId(), e);
+				close(null);
+			}
+			return;
+		}
+		for (int i = 0; i < FLUSH_BATCH; i++) {
+			TextMessage message = poll();
+			if (message == null) {
+				return;
+			}
+			sendStartTime = System.currentTimeMillis();
+			try {
+				session.sendMessage(message);
+			} catch (IOException | IllegalStateException e) {
+				log.debug("메세지 전송 실패. 세션 ID : {}", session.getId(), e);
+				close(null);
+				return;
+			} finally {
+				sendStartTime = 0;
+			}
+		}
+		if (hasMore()) {
+			next.run();
+		}
+	}
+
+	// 비동기 전송 완료 (컨테이너 스레드에서 호출되므로 다음 전송은 스레드풀에 예약)
+	private void onSent(SendResult result, Runnable next) {
+		sendStartTime = 0;
+		if (!result.isOK()) {
+			log.debug("메세지 전송 실패. 세션 ID : {}", session.getId(), result.getException());
+			close(result.getException() instanceof SocketTimeoutException ? "전송시간 초과" : null);
+			return;
+		}
+		if (hasMore()) {
+			next.run();
+		}
+	}
+
+	// 보낼 메세지를 꺼냄. 없거나 종료된 세션이면 flush 종료
+	private TextMessage poll() {
+		synchronized (this) {
+			TextMessage message = closed ? null : buffer.pollFirst();
+			if (message == null) {
+				flushing = false;
+				return null;
+			}
+			bufferSize -= message.getPayloadLength();
+			if (session.isOpen()) {
+				return message;
+			}
+		}
+		close(null);
+		return null;
+	}
+
+	// 남은 메세지가 있으면 flushing을 유지하고 true (호출한 쪽에서 다음 flush 예약)
+	private synchronized boolean hasMore() {
+		if (closed || buffer.isEmpty()) {
+			flushing = false;
+			return false;
+		}
+		return true;
+	}
+
+	// flush 예약에 실패한 경우 (감시 스케쥴러의 retryFlush에서 다시 예약할 수 있도록)
+	public synchronized void cancelFlush() {
+		flushing = false;
+	}
+
+	/*
+	 * 대기열에 메세지가 남아있는데 예약된 flush가 없으면 flushing으로 바꾸고 true
+	 *  - 스레드풀 대기열이 가득 차서 예약에 실패한 메세지는 새 메세지가 오지 않으면 전송되지 않으므로 감시 스케쥴러에서 확인
+	 */
+	public synchronized boolean retryFlush() {
+		if (closed || flushing || buffer.isEmpty()) {
+			return false;
+		}
+		flushing = true;
+		return true;
+	}
+
+	public void close(String reason) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			flushing = false;
+			buffer.clear();
+			bufferSize = 0;
+		}
+		if (reason == null) {
+			return;
+		}
+		log.warn("느린 클라이언트 연결 종료 ({}). 세션 ID : {}, 버려진 메세지 : {}", reason, session.getId(), dropped);
+		try {
+			session.close(CloseStatus.SESSION_NOT_RELIABLE);
+		} catch (IOException e) {
+			log.debug("세션 종료 실패. 세션 ID : {}", session.getId(), e);
+		}
+	}
+
+	// 현재 전송이 sendTimeLimit 이상 끝나지 않고 있는지 (ChatBroadcaster의 감시 스케쥴러에서도 확인)
+	public boolean isSendTimedOut(long now) {
+		long start = sendStartTime;
+		return start > 0 && now - start > sendTimeLimit;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public synchronized int getBufferSize() {
+		return bufferSize;
+	}
+
+	public synchronized long getDropped() {
+		return dropped;
+	}
+}
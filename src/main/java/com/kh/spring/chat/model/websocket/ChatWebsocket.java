@@ -1,22 +1,21 @@
 package com.kh.spring.chat.model.websocket;
 
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.kh.spring.chat.model.service.ChatService;
+import com.kh.spring.chat.model.service.ChatHistory;
+import com.kh.spring.chat.model.service.ChatMessageWriter;
 import com.kh.spring.chat.model.vo.ChatMessage;
+import com.kh.spring.member.model.vo.Member;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,8 +23,7 @@ import lombok.extern.slf4j.Slf4j;
 public class ChatWebsocket extends TextWebSocketHandler{
 	// TextWebSocketHandler -> 텍스트 기반의 메세지 처리를 위한 메서드를 제공하는 웹소켓 클래스
 	
-	@Autowired
-	private ChatService chatService;
+	private static final int MESSAGE_MAX_BYTES = 4000; // CHAT_MESSAGE.MESSAGE 컬럼 크기
 	
 	private final ObjectMapper objectMapper = new ObjectMapper();// Gson이랑 비슷함
 	// Gson 라이브러리 안하고 jackson-databind 라이브러리를 사용했었음
@@ -33,7 +31,17 @@ public class ChatWebsocket extends TextWebSocketHandler{
 	
 	// 채팅방별 WebSocketSession을 관리
 	// key : 각 채팅방 번호. 여러명의 사용자 -> 여러개의 웹소켓 세션
-	private final Map<Integer, Set<WebSocketSession>> roomSession = new HashMap<>();
+	@Autowired
+	private ChatRoomRegistry roomRegistry;
+	
+	@Autowired
+	private ChatBroadcaster broadcaster; // 메세지 브로드캐스트
+	
+	@Autowired
+	private ChatMessageWriter messageWriter; // 메세지 지연 저장
+	
+	@Autowired
+	private ChatHistory history; // 채팅방별 최근 메세지
 	/*
 	 * WebSocketSession
 	 *  - 클라이언트가 웹소켓을 통해 연결하고 있는 동안 유지되는 세션
@@ -46,17 +54,13 @@ public class ChatWebsocket extends TextWebSocketHandler{
 	public void afterConnectionEstablished(WebSocketSession session) throws Exception {
 		/*
 		 * 업무로직
-		 * session안에 담겨있는 채팅방 번호를 꺼내고, roomSessions에서 채팅방 번호에 맞는 set객체를 반환
-		 * 만약, 채팅방에 set객체가 없으면 새롭게 생성 후 데이터를 추가
+		 * session안에 담겨있는 채팅방 번호를 꺼내고, roomRegistry에서 채팅방 번호에 맞는 set객체에 추가
+		 * 만약, 채팅방에 set객체가 없으면 새롭게 생성 후 데이터를 추가 (roomRegistry가 원자적으로 처리)
 		 */
 		int chatRoomNo = (int) session.getAttributes().get("chatRoomNo");
 		log.debug("웹소켓 연결 완료. 세션 ID : {}, 채팅방 번호 : {}", session.getId(), chatRoomNo);
-		Set<WebSocketSession> sessions = roomSession.get("chatRoomNo");
-		if (sessions == null) {
-			sessions = Collections.synchronizedSet(new HashSet<>());
-			roomSession.put(chatRoomNo, sessions);
-		}
-		sessions.add(session);
+		broadcaster.register(session);
+		roomRegistry.join(chatRoomNo, session);
 	}
 	
 	// 웹소켓 연결 종료 후 클라이언트의 session 정보 삭제
@@ -64,13 +68,12 @@ public class ChatWebsocket extends TextWebSocketHandler{
 	public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
 		int chatRoomNo = (int) session.getAttributes().get("chatRoomNo");
 		log.debug("웹소켓 연결 종료. 세션 ID : {}, 채팅방 번호 : {}", session.getId(), chatRoomNo);
-		Set<WebSocketSession> roomSet = roomSession.get(chatRoomNo);
-		if (roomSet != null) {
-			roomSet.remove(session);
-			// 모든 사용자가 방에 없으면 map에서 제거시키기
-			if (roomSet.isEmpty()) {
-				roomSession.remove(chatRoomNo);
-			}
+		// 모든 사용자가 방에 없으면 map에서 제거시키기
+		roomRegistry.leave(chatRoomNo, session);
+		broadcaster.unregister(session);
+		// 접속한 사람이 없는 채팅방은 최근 메세지 버퍼도 제거 (저장 대기중인 메세지가 있으면 저장된 뒤 제거)
+		if (!roomRegistry.isActive(chatRoomNo)) {
+			history.evict(chatRoomNo);
 		}
 	}
 
@@ -86,21 +89,33 @@ public class ChatWebsocket extends TextWebSocketHandler{
 		ChatMessage chatMessage = 
 				objectMapper.readValue(message.getPayload(), ChatMessage.class);
 		
-		// 전달받은 메세지를 chat_message 테이블에 추가
-		int result = chatService.insertMessage(chatMessage);
-		String current = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
-		chatMessage.setCreateDate(current); // 이거 먼저 해서 db에 보내야 더 정확한거 아닌가???
+		// 보낸 사람, 채팅방은 클라이언트가 보낸 값이 아닌 로그인 정보와 세션의 채팅방 번호를 사용
+		Member loginUser = (Member) ((Authentication) session.getPrincipal()).getPrincipal();
+		chatMessage.setChatRoomNo((int) session.getAttributes().get("chatRoomNo"));
+		chatMessage.setUserNo(loginUser.getUserNo());
+		chatMessage.setUserName(loginUser.getUserName());
+		chatMessage.setCmNo(0); // 메세지 번호는 저장 시 서버에서 발급
 		
-		// 메세지 브로드캐스트
-		if (result > 0) {
-			// 같은 채팅방을 이용중인 사용자들에게 메세지 전송
-			Set<WebSocketSession> roomSet = roomSession.get(chatMessage.getChatRoomNo());
-			if (roomSet != null) {
-				for (WebSocketSession s : roomSet) {
-					String json = objectMapper.writeValueAsString(chatMessage); // VO -> JSON
-					s.sendMessage(new TextMessage(json)); // 클라이언트에게 메세지를 전달하는 함수
-				}
-			}
+		// 유효성 검사 : 빈 메세지, MESSAGE 컬럼(VARCHAR2(4000 BYTE))보다 긴 메세지는 전송/저장하지 않음
+		String content = chatMessage.getMessage();
+		if (content == null || content.trim().isEmpty()
+				|| content.getBytes(StandardCharsets.UTF_8).length > MESSAGE_MAX_BYTES) {
+			log.warn("잘못된 메세지. 세션 ID : {}, 회원번호 : {}", session.getId(), loginUser.getUserNo());
+			return;
 		}
+		
+		// 받은 시간 기록 (클라이언트가 보낸 값은 사용하지 않음)
+		long now = System.currentTimeMillis();
+		chatMessage.setSendTime(now);
+		chatMessage.setCreateDate(new SimpleDateFormat("yyyy-MM-dd").format(new Date(now)));
+		
+		// 메세지 브로드캐스트
+		// 같은 채팅방을 이용중인 사용자들에게 먼저 메세지 전송 (DB 저장을 기다리지 않음)
+		// JSON 변환은 한 번만 하고, 전송은 별도 스레드풀에서 처리
+		broadcaster.broadcast(chatMessage);
+		
+		// 전달받은 메세지를 chat_message 테이블에 추가
+		// 저장 대기열에 넣고 ChatMessageWriter가 모아서 일괄 저장
+		messageWriter.enqueue(chatMessage);
 	}
 }
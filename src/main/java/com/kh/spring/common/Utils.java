@@ -2,50 +2,78 @@ package com.kh.spring.common;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
-import javax.servlet.ServletContext;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.springframework.web.multipart.MultipartFile;
 
 public class Utils {
 
-	// 파일 저장 함수
-	// 파일을 저장하면서, 파일명을 수정하고 수정된 파일명을 반환
-	public static String saveFile(MultipartFile upfile, ServletContext application, String boardCode) {
-		// 첨부파일을 저장할 저장경로 획득 (하드코딩할수도 있고 properties에서 가져올수도 있고 방법은 다양)
-		String webPath = "/resources/images/board/"+boardCode+"/"; // 어플리케이션이 가동되는 context상의 경로
-		// getRealPath(경로)
-		//  - 실제 서버의 파일 시스템 경로를 절대경로로 반환하는 메서드
-		//  - ex) C:/springWorkspace/spring-project/... 현재 운용환경에 맞는 절대경로를 가져와야돼서 하드코딩 X
-		String serverFolderPath = application.getRealPath(webPath);
-		System.out.println(serverFolderPath);
-		
-		// 저장경로가 존재하지 않는다면 생성
-		File dir = new File(serverFolderPath);
-		if(!dir.exists()) {
-			dir.mkdirs(); // 중첩 디렉토리 생성을 위해
-		}
-		
-		// 랜덤한 (고유한) 파일명 생성
-		String originName = upfile.getOriginalFilename(); // 파일의 원본명
-		String currentTime = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
-		int random = (int)(Math.random()*90000 + 10000); // 5자리 랜덤값
-		String ext = originName.substring(originName.lastIndexOf(".")); // .에서부터 끝까지 (확장자명)
-		String changeName = currentTime + random + ext;
-		
-		// 서버에 파일을 업로드
+	/*
+	 * 파일 내용을 tempFile에 저장하면서 SHA-256 해시를 계산하여 "해시값 + 확장자" 형태의 파일명을 반환
+	 *  - 내용 기반 주소(content-addressed) 방식 : 같은 파일을 여러번 올려도 디스크에는 한 번만 저장
+	 *  - 하나의 파일을 여러 BOARD_IMG 행이 CHANGE_NAME으로 참조할 수 있으며,
+	 *    참조하는 행이 하나도 없을 때만 FileDeleteTask가 파일을 삭제한다
+	 *  - 파일 저장(임시파일 -> 최종 경로 이동)은 UploadPipeline에서 처리
+	 */
+	public static String writeWithHash(MultipartFile upfile, File tempFile) throws IOException {
+		MessageDigest digest;
 		try {
-			upfile.transferTo(new File(serverFolderPath + changeName));
-		} catch (IllegalStateException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (InputStream in = new DigestInputStream(upfile.getInputStream(), digest)) {
+			Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
-		
-		// 파일명 반환
-		return webPath + changeName;
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.append(extension(upfile.getOriginalFilename())).toString();
+	}
+	
+	// 확장자명 (.포함, 소문자). 확장자가 없으면 빈 문자열
+	public static String extension(String originName) {
+		if (originName == null || originName.lastIndexOf(".") == -1) {
+			return "";
+		}
+		return originName.substring(originName.lastIndexOf(".")).toLowerCase(); // .에서부터 끝까지 (확장자명)
+	}
+	
+	// 사진게시판 이미지 변환본 종류 (썸네일, 너비별 이미지) - ImageProcessor에서 생성
+	public static final String THUMBNAIL = "thumb";
+	public static final int[] IMAGE_WIDTHS = {320, 640, 1024};
+	
+	// 변환본 파일명 : 원본명_thumb.jpg|png, 원본명_w{너비}.jpg|png
+	private static final Pattern VARIANT = Pattern.compile("(.+)_(" + THUMBNAIL + "|w\\d+)\\.(jpg|jpeg|png)");
+	
+	// 사진게시판 이미지 변환본 파일명 (원본명_suffix.확장자) - ImageProcessor에서 생성
+	//  ex) /resources/images/board/P/9f86d081...0f00a08.gif -> /resources/images/board/P/9f86d081...0f00a08_thumb.png
+	//  jpg가 아닌 이미지는 png로 변환되어 저장된다
+	public static String variantName(String changeName, String suffix) {
+		int dot = changeName.lastIndexOf(".");
+		if (dot <= changeName.lastIndexOf("/")) {
+			dot = changeName.length(); // 확장자가 없는 파일
+		}
+		String ext = changeName.substring(dot).toLowerCase();
+		if (!ext.equals(".jpg") && !ext.equals(".jpeg")) {
+			ext = ".png";
+		}
+		return changeName.substring(0, dot) + "_" + suffix + ext;
+	}
+	
+	// 변환본 파일명이라면 원본 파일명의 확장자를 제외한 부분을 반환, 원본이면 null
+	//  - 정해진 접미사(_thumb, _w{너비})만 변환본으로 봄 (예전 방식의 파일명 등 _가 포함된 원본은 원본으로 처리)
+	public static String variantOrigin(String fileName) {
+		Matcher m = VARIANT.matcher(fileName);
+		return m.matches() ? m.group(1) : null;
 	}
 	
 	/*
@@ -57,22 +85,88 @@ public class Utils {
 	 *  (사용자가 입력한 모든 값들에 처리해주어야 함)
 	 */
 	public static String XSSHandling(String content) {
-        if(content != null) {
-            content = content.replaceAll("&", "&amp;");
-            content = content.replaceAll("<", "&lt;");
-            content = content.replaceAll(">", "&gt;");
-            content = content.replaceAll("\"", "&quot;");
-        }
-        return content;
-    }
-    // 개행문자 처리
-    // textarea -> \n , p -> <br>
-    public static String newLineHandling(String content) {
-        return content.replaceAll("(\r\n|\r|\n|\n\r)", "<br>");
-    }
-    // 개행해제 처리
-    public static String newLineClear(String content) {
-        return content.replaceAll("<br>","\n");
-    }
+		return encode(content, true, false);
+	}
+	
+	// 개행문자 처리
+	// textarea -> \n , p -> <br>
+	public static String newLineHandling(String content) {
+		return encode(content, false, true);
+	}
+	
+	// 게시글 내용용 : XSS 처리와 개행문자 처리를 한 번의 순회로 수행 (XSSHandling 후 newLineHandling한 결과와 같음)
+	public static String XSSNewLineHandling(String content) {
+		return encode(content, true, true);
+	}
+	
+	// 개행해제 처리
+	public static String newLineClear(String content) {
+		if (content == null) {
+			return null;
+		}
+		int index = content.indexOf("<br>");
+		if (index == -1) {
+			return content;
+		}
+		StringBuilder sb = new StringBuilder(content.length());
+		int start = 0;
+		for (; index != -1; index = content.indexOf("<br>", start)) {
+			sb.append(content, start, index).append('\n');
+			start = index + 4;
+		}
+		return sb.append(content, start, content.length()).toString();
+	}
+	
+	/*
+	 * 문자열을 한 번만 순회하면서 변환
+	 *  - replaceAll은 호출할 때마다 정규식을 컴파일하고 새 문자열을 만들기 때문에 여러번 호출하면 그만큼 비용이 듦
+	 *  - 변환할 문자가 없으면 새 문자열을 만들지 않고 그대로 반환
+	 *  - 변환할 문자가 있으면 그 앞부분은 한 번에 복사하고 이후부터 한 글자씩 처리
+	 *  - xss : & < > " 를 html entity로 변환, newLine : \r\n, \r, \n 을 <br>로 변환
+	 */
+	private static String encode(String content, boolean xss, boolean newLine) {
+		if (content == null) {
+			return null;
+		}
+		int length = content.length();
+		int i = 0;
+		while (i < length && !needsEncoding(content.charAt(i), xss, newLine)) {
+			i++;
+		}
+		if (i == length) {
+			return content;
+		}
+		// 변환되면 길어지므로 여유있게 생성 (대부분 재할당 없이 처리)
+		StringBuilder sb = new StringBuilder(length + (length >> 3) + 16);
+		sb.append(content, 0, i);
+		for (; i < length; i++) {
+			char c = content.charAt(i);
+			if (!needsEncoding(c, xss, newLine)) {
+				sb.append(c);
+				continue;
+			}
+			switch (c) {
+			case '&': sb.append("&amp;"); break;
+			case '<': sb.append("&lt;"); break;
+			case '>': sb.append("&gt;"); break;
+			case '"': sb.append("&quot;"); break;
+			case '\r':
+				if (i + 1 < length && content.charAt(i + 1) == '\n') {
+					i++; // \r\n은 개행 하나로 처리
+				}
+				sb.append("<br>");
+				break;
+			default: sb.append("<br>"); // \n
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static boolean needsEncoding(char c, boolean xss, boolean newLine) {
+		if (xss && (c == '&' || c == '<' || c == '>' || c == '"')) {
+			return true;
+		}
+		return newLine && (c == '\r' || c == '\n');
+	}
 	
 }
@@ -1,5 +1,6 @@
 package com.kh.spring.common.exception;
 
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -14,4 +15,10 @@ public class ExceptionController {
 		model.addAttribute("errorMsg", "서비스 이용 중 에러가 발생했습니다.");
 		return "common/errorPage";
 	}
+	
+	// 권한 오류(@PreAuthorize 등)는 에러페이지(500)로 처리하지 않고 스프링 시큐리티에 넘겨서 권한없음(403)으로 처리
+	@ExceptionHandler(value = AccessDeniedException.class)
+	public void accessDeniedHandler(AccessDeniedException e) {
+		throw e;
+	}
 }
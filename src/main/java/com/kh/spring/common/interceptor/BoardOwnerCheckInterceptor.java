@@ -1,5 +1,7 @@
 package com.kh.spring.common.interceptor;
 
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -7,9 +9,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 
 import com.kh.spring.board.model.service.BoardService;
-import com.kh.spring.board.model.vo.BoardExt;
 import com.kh.spring.member.model.vo.Member;
 
 public class BoardOwnerCheckInterceptor implements HandlerInterceptor{
@@ -31,18 +33,28 @@ public class BoardOwnerCheckInterceptor implements HandlerInterceptor{
 		}
 		
 		// 2. 요청 uri에서 게시글 번호 추출
-		//  /board/update/1001
-		String [] uri = request.getRequestURI().split("/");
-		int boardNo = Integer.parseInt(uri[uri.length-1]);
-		
-		BoardExt board = boardService.selectBoard(boardNo);
+		//  /board/update/{boardCode}/{boardNo}
+		int boardNo = getBoardNo(request);
 		
-		int boardWriter = Integer.parseInt(board.getBoardWriter());
-		if (!(board != null && boardWriter == loginUser.getUserNo())) {
+		// 게시글 전체(내용 + 첨부파일 목록)가 아니라 작성자 번호만 조회 (캐시되어 있으면 쿼리 없음)
+		String boardWriter = boardService.selectBoardWriter(boardNo);
+		if (boardWriter == null || Integer.parseInt(boardWriter) != loginUser.getUserNo()) {
 			// 권한없음 페이지로 이동
 			response.sendRedirect(request.getContextPath() + "/security/accessDenied");
 			return false; // 컨트롤러로 전달 안 함
 		}
 		return true;
 	}
+	
+	// 핸들러 매핑 시 추출해둔 경로변수({boardNo})를 사용하고, 없는 경우에만 uri를 직접 분리
+	@SuppressWarnings("unchecked")
+	private int getBoardNo(HttpServletRequest request) {
+		Map<String, String> pathVariables = 
+				(Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		if (pathVariables != null && pathVariables.containsKey("boardNo")) {
+			return Integer.parseInt(pathVariables.get("boardNo"));
+		}
+		String uri = request.getRequestURI();
+		return Integer.parseInt(uri.substring(uri.lastIndexOf('/') + 1));
+	}
 }
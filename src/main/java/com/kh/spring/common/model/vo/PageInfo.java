@@ -13,4 +13,14 @@ public class PageInfo {
 	private int maxPage;
 	private int startPage;
 	private int endPage;
+	
+	// 키셋(seek) 페이징용 필드
+	//  - offset 대신 BOARD_NO를 커서로 사용 => 몇번째 페이지든 인덱스 탐색 비용이 1페이지와 동일
+	private boolean keyset; // 키셋 페이징 모드 여부
+	private int cursor; // 기준이 되는 글번호 (0이면 첫 페이지)
+	private String direction; // next : cursor보다 작은 글번호, prev : cursor보다 큰 글번호
+	private int firstBoardNo; // 현재 페이지 첫번째 글번호 (이전 페이지 커서)
+	private int lastBoardNo; // 현재 페이지 마지막 글번호 (다음 페이지 커서)
+	private boolean hasPrev;
+	private boolean hasNext;
 }
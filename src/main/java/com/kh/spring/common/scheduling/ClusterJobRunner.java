@@ -0,0 +1,168 @@
+package com.kh.spring.common.scheduling;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kh.spring.common.scheduling.model.dao.JobLockDao;
+import com.kh.spring.common.scheduling.model.vo.JobRunHistory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 여러 서버에서 동시에 실행되면 안되는 스케쥴 작업 실행기
+ *  - 같은 war를 여러 서버에 배포하면 @Scheduled 작업이 서버마다 실행되므로 JOB_LOCK 테이블의 임대(lease)로 한 서버만 실행
+ *  - lockAtMost : 잠금 최대 유지시간. 실행 중인 서버가 죽어도 이 시간이 지나면 다른 서버가 잠금을 가져감
+ *  - lockAtLeast : 잠금 최소 유지시간. 서버 간 시계 차이로 작업이 금방 끝난 뒤 다른 서버가 곧바로 다시 실행하는 것을 방지
+ *  - 모든 서버가 같은 시각에 잠금을 시도하지 않도록 실행 전 무작위 지연(jitter)
+ *    지연은 sleep이 아닌 전용 스레드풀의 예약 실행으로 처리 => @Scheduled 스레드를 붙잡지 않음 (작업도 전용 스레드에서 실행)
+ *  - 실패한 작업은 연속 실패 횟수에 따라 다음 실행을 지수적으로 미룸(backoff)
+ *  - 실행 결과(수행 서버, 수행시간, 성공여부)는 JOB_RUN_HISTORY에 기록하고, HISTORY_RETENTION_DAYS가 지난 이력은 매일 삭제
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterJobRunner {
+	
+	private static final long MAX_JITTER = 3000; // 최대 지연시간 3초
+	private static final long BASE_BACKOFF = 60 * 1000; // 첫 실패 후 1분
+	private static final long MAX_BACKOFF = 60 * 60 * 1000; // 최대 1시간
+	private static final int ERROR_MSG_LENGTH = 1000;
+	private static final int HISTORY_RETENTION_DAYS = 30; // 실행 이력 보관기간
+	
+	private static final String NODE_NAME = nodeName();
+	
+	private final JobLockDao jobLockDao;
+	
+	// 이 서버에서 실행중인 작업 (같은 서버에서 이전 실행이 끝나기 전에 다시 실행되는 것을 방지)
+	private final Set<String> running = ConcurrentHashMap.newKeySet();
+	// key : 작업명, value : {연속 실패 횟수, 다음 실행 가능 시간}
+	private final Map<String, long[]> failures = new ConcurrentHashMap<>();
+	
+	// 지연 실행 + 작업 실행 전용 스레드풀
+	private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+	
+	// 무작위 지연 후 잠금을 얻으면 실행 (호출한 @Scheduled 스레드는 바로 반환)
+	public void run(String jobName, long lockAtMost, long lockAtLeast, Runnable task) {
+		long[] failure = failures.get(jobName);
+		if (failure != null && System.currentTimeMillis() < failure[1]) {
+			log.debug("[{}] 실패 후 대기중 - {}회 연속 실패", jobName, failure[0]);
+			return;
+		}
+		if (!running.add(jobName)) {
+			return;
+		}
+		try {
+			executor.schedule(() -> {
+				try {
+					if (!jobLockDao.acquireLock(jobName, NODE_NAME, lockAtMost)) {
+						log.debug("[{}] 다른 서버에서 실행중", jobName);
+						return;
+					}
+					execute(jobName, lockAtLeast, task);
+				} catch (RuntimeException e) {
+					log.error("[{}] 잠금 획득 실패", jobName, e);
+				} finally {
+					running.remove(jobName);
+				}
+			}, ThreadLocalRandom.current().nextLong(MAX_JITTER), TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			running.remove(jobName); // 서버 종료중
+		}
+	}
+	
+	// 오래된 실행 이력 삭제 (매일 4시 30분, 한 서버에서만)
+	@Scheduled(cron = "0 30 4 * * ?")
+	public void purgeRunHistory() {
+		run("purgeRunHistory", 10 * 60 * 1000, 10 * 60 * 1000, () -> {
+			int deleted = jobLockDao.deleteRunHistory(HISTORY_RETENTION_DAYS);
+			log.debug("실행 이력 삭제 - {}건", deleted);
+		});
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+	}
+	
+	private void execute(String jobName, long lockAtLeast, Runnable task) {
+		JobRunHistory history = new JobRunHistory();
+		history.setJobName(jobName);
+		history.setRunBy(NODE_NAME);
+		history.setStartTime(new Date());
+		long start = System.nanoTime();
+		try {
+			task.run();
+			history.setStatus("S");
+			failures.remove(jobName);
+		} catch (RuntimeException e) {
+			log.error("[{}] 작업 실패", jobName, e);
+			history.setStatus("F");
+			history.setErrorMsg(errorMessage(e));
+			backoff(jobName);
+		} finally {
+			history.setDuration((System.nanoTime() - start) / 1000000);
+			try {
+				jobLockDao.releaseLock(jobName, NODE_NAME, lockAtLeast);
+				jobLockDao.insertRunHistory(history);
+			} catch (RuntimeException e) {
+				// 해제에 실패해도 lockAtMost가 지나면 다른 서버가 가져갈 수 있음
+				log.error("[{}] 잠금 해제 / 이력 저장 실패", jobName, e);
+			}
+		}
+	}
+	
+	/*
+	 * 작업별 진행 위치(watermark) : 다음 실행이 다른 서버에서 되더라도 이어서 처리할 수 있도록 JOB_LOCK 행에 저장
+	 *  - run으로 실행중인 작업 안에서 호출 (잠금을 가진 서버만 저장됨)
+	 */
+	public long getWatermark(String jobName) {
+		Long watermark = jobLockDao.selectWatermark(jobName);
+		return watermark == null ? 0 : watermark;
+	}
+	
+	public void saveWatermark(String jobName, long watermark) {
+		if (jobLockDao.updateWatermark(jobName, NODE_NAME, watermark) == 0) {
+			log.warn("[{}] 잠금이 만료되어 진행 위치를 저장하지 못함", jobName);
+		}
+	}
+	
+	private void backoff(String jobName) {
+		long[] failure = failures.computeIfAbsent(jobName, k -> new long[2]);
+		failure[0]++;
+		long delay = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(failure[0] - 1, 20));
+		failure[1] = System.currentTimeMillis() + delay;
+		log.warn("[{}] {}회 연속 실패 - {}초 후 재시도", jobName, failure[0], delay / 1000);
+	}
+	
+	private String errorMessage(Throwable e) {
+		String msg = e.getClass().getName() + " : " + e.getMessage();
+		return msg.length() > ERROR_MSG_LENGTH ? msg.substring(0, ERROR_MSG_LENGTH) : msg;
+	}
+	
+	// 호스트명:pid (RuntimeMXBean의 이름은 pid@호스트명 형식)
+	private static String nodeName() {
+		String pid = ManagementFactory.getRuntimeMXBean().getName();
+		pid = pid.indexOf('@') == -1 ? pid : pid.substring(0, pid.indexOf('@'));
+		try {
+			return InetAddress.getLocalHost().getHostName() + ":" + pid;
+		} catch (UnknownHostException e) {
+			return "unknown:" + pid;
+		}
+	}
+}
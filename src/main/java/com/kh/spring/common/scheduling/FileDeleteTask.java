@@ -1,18 +1,20 @@
 package com.kh.spring.common.scheduling;
 
-import java.io.File;
-import java.util.Arrays;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-
-import javax.servlet.ServletContext;
+import java.util.Set;
 
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import com.kh.spring.board.model.service.BoardService;
-import com.kh.spring.board.model.vo.BoardImg;
-import com.kh.spring.board.model.vo.BoardType;
+import com.kh.spring.board.model.service.BoardTypeRegistry;
+import com.kh.spring.common.Utils;
+import com.kh.spring.common.upload.AttachmentIndex;
+import com.kh.spring.common.upload.AttachmentIndex.FileEntry;
+import com.kh.spring.common.upload.UploadPipeline;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,65 +27,167 @@ public class FileDeleteTask {
      * 파일 삭제 스케쥴러
      *  - 목표 : DB에는 존재하지 않으나 WEB-SERVER상에 존재하는 쓸모없는 파일을 삭제.
      * 업무로직
-     * 1. 데이터베이스(board_img 테이블)에 등록된 모든 이미지 파일 경로 목록을 조회
-     * 2. 모든 게시판 유형(boardType)을 조회하여, 각각의 게시판 디렉토리 경로를 탐색
-     * 3. 해당 디렉토리에서 실제 서버에 존재하는 이미지 파일 목록 을 수집
-     * 4. 각 파일이 DB에 등록되어 있는 파일인지 여부를 판단
+     * 1. 데이터베이스(board_img 테이블)에 등록된 모든 이미지 파일 경로 목록을 조회하여 HashSet으로 보관 (실행당 쿼리 1번)
+     * 2. 모든 게시판 유형(boardType)을 BoardTypeRegistry에서 조회하여, 각각의 게시판 디렉토리 경로를 탐색
+     * 3. 해당 디렉토리에서 실제 서버에 존재하는 이미지 파일 목록 을 수집 (AttachmentIndex에서 조회)
+     * 4. 각 파일이 DB에 등록되어 있는 파일인지 여부를 판단 (HashSet이라 파일당 O(1))
      * 5. DB에 없는 파일(즉, 더 이상 사용되지 않는 파일)이라면 삭제 처리
-     * 6. 유저활동량이 적은 매달 1일 4시에 실행되도록 설정
+     * 
+     * 증분 정리 (5분마다)
+     *  - 마지막으로 검사한 시점(watermark) 이후에 추가/수정된 파일만 검사하고, DB에서는 해당 파일의 경로만 조회
+     *  - 업로드 중이거나 트랜잭션 커밋 전인 파일을 지우지 않도록 최근 GRACE_PERIOD 이내의 파일은 다음 실행으로 미룸
+     * 전체 정리 (유저활동량이 적은 매일 4시)
+     *  - 게시글 수정으로 DB에서 빠진 예전 파일들까지 모두 검사
+     * 
+     * 여러 서버가 같은 첨부파일 폴더를 공유하는 경우 ClusterJobRunner로 한 서버에서만 실행
      */
+	private static final String WEB_PATH = "/resources/images/board/";
+	private static final long GRACE_PERIOD = 10 * 60 * 1000; // 10분
+	private static final String NEW_FILES_JOB = "deleteNewFiles";
+	
 	private final BoardService boardService;
-	private final ServletContext application; 
+	private final BoardTypeRegistry boardTypeRegistry; // 게시판 유형 (DB 조회 없음)
+	private final UploadPipeline uploadPipeline; // 삭제는 업로드 커밋과 같은 잠금 안에서 처리
+	private final AttachmentIndex attachmentIndex; // 첨부파일 인덱스 (WatchService로 갱신)
+	private final ClusterJobRunner jobRunner;
+	
+	@Scheduled(fixedDelay = 5 * 60 * 1000)
+	public void deleteNewFiles() {
+		// 잠금은 최대 4분 (다음 실행 전에 만료), 최소 1분 유지
+		jobRunner.run(NEW_FILES_JOB, 4 * 60 * 1000, 60 * 1000, this::sweepNew);
+	}
 	
-//	@Scheduled(cron = "0 0 4 1 * ?")
-	@Scheduled(fixedRate = 5000)
-	public void fileDelete() {
-		Map<String, String> boardTypeMap = boardService.getBoardTypeMap();
-		for(String boardCd : boardTypeMap.keySet()) {
-			String realPath = application.getRealPath("/resources/images/board/"+boardCd);
-			File file = new File(realPath);
-			
-			if (file.exists()) {
-				File[] images = file.listFiles();
-				if (images != null) {
-					for (File img : images) {
-						BoardImg bi = boardService.getBoardImg("/resources/images/board/"+boardCd+"/"+img.getName());
-						if (bi == null) {
-							img.delete();
-						}
+	@Scheduled(cron = "0 0 4 * * ?")
+	public void deleteAllFiles() {
+		// 다른 서버의 시계가 조금 늦더라도 같은 날 다시 실행되지 않도록 최소 10분 유지
+		jobRunner.run("deleteAllFiles", 60 * 60 * 1000, 10 * 60 * 1000, this::sweepAll);
+	}
+	
+	/*
+	 * 증분 정리
+	 *  - watermark는 작업 잠금(JOB_LOCK) 행에 저장 => 어느 서버가 실행하든 이전 실행이 검사한 시점부터 이어서 검사
+	 *  - DB 전체 파일목록 대신 검사 대상 파일(변환본은 원본)의 경로만 조회
+	 */
+	private synchronized void sweepNew() {
+		long until = System.currentTimeMillis() - GRACE_PERIOD;
+		long from = jobRunner.getWatermark(NEW_FILES_JOB);
+		
+		// 1. 이미 검사한 파일, 유예기간 이내의 파일을 제외한 검사 대상 수집 (웹경로 -> DB에서 확인할 원본 웹경로)
+		Map<String, String> targets = new HashMap<>();
+		for (String boardCd : boardTypeRegistry.getBoardCodes()) {
+			String webDir = WEB_PATH + boardCd + "/";
+			Map<String, FileEntry> snapshot = attachmentIndex.snapshot(boardCd);
+			Map<String, String> origins = null; // 확장자를 제외한 이름 -> 원본 파일명 (변환본이 있을 때만 생성)
+			for (Map.Entry<String, FileEntry> e : snapshot.entrySet()) {
+				String fileName = e.getKey();
+				if (!isTarget(fileName, e.getValue().getLastModified(), from, until)) {
+					continue;
+				}
+				String origin = fileName;
+				String base = Utils.variantOrigin(fileName);
+				if (base != null) {
+					if (origins == null) {
+						origins = originNames(snapshot);
+					}
+					origin = origins.get(base);
+					if (origin == null) {
+						continue; // 원본이 폴더에 없는 변환본은 전체 정리에서 확인
 					}
 				}
+				targets.put(webDir + fileName, webDir + origin);
+			}
+		}
+		
+		// 2. 대상 파일의 원본 경로 중 DB에 등록된 경로만 조회
+		int deleted = 0;
+		if (!targets.isEmpty()) {
+			Set<String> referenced = new HashSet<>(
+					boardService.selectFileListByName(new ArrayList<>(new HashSet<>(targets.values()))));
+			for (Map.Entry<String, String> e : targets.entrySet()) {
+				if (!referenced.contains(e.getValue()) && delete(e.getKey(), e.getValue(), until)) {
+					deleted++;
+				}
 			}
 		}
+		// 유예기간이 지난 시점까지 검사가 끝났음을 기록 (잠금을 가진 서버만 갱신됨)
+		jobRunner.saveWatermark(NEW_FILES_JOB, Math.max(from, until));
+		log.debug("파일 정리 완료 (증분) - 대상 {}건, 삭제 {}건", targets.size(), deleted);
 	}
 	
-//	@Scheduled(cron = "0 0 4 1 * ?")
-	@Scheduled(fixedRate = 5000)
-	public void deleteFile() {
+	// 전체 정리 : 게시글 수정으로 DB에서 빠진 예전 파일들까지 모두 검사
+	private synchronized void sweepAll() {
+		long until = System.currentTimeMillis() - GRACE_PERIOD;
+		
 		// 1. 데이터베이스 안의 모든 파일목록 조회
-		List <String> list = boardService.selectFileList();
+		Set<String> fileSet = new HashSet<>();
+		Set<String> baseSet = new HashSet<>(); // 확장자를 제외한 경로 (썸네일 등 변환본 확인용)
+		for (String changeName : boardService.selectFileList()) {
+			fileSet.add(changeName);
+			int dot = changeName.lastIndexOf(".");
+			baseSet.add(dot > changeName.lastIndexOf("/") ? changeName.substring(0, dot) : changeName);
+		}
 		
-		// 2. 모든 게시판 유형의 디렉토리 경로 탐색
-		List <BoardType> typeList = boardService.selectBoardTypeList();
-		for (BoardType type : typeList) {
-			File path = new File(application.getRealPath("/resources/images/board/")+type.getBoardCd());
-			if (!path.exists()) {
-				continue;
-			}
-			File[] files = path.listFiles();
-			List<File> fileList = Arrays.asList(files);
-			if (!list.isEmpty()) {
-				if (!fileList.isEmpty()) {
-					for (File serverFile : fileList) {
-						String fileName = serverFile.getName();
-						fileName = "/resources/images/board/"+type.getBoardCd()+"/"+fileName;
-						if (list.indexOf(fileName) == -1) {
-							log.debug(fileName+" 삭제완료");
-							serverFile.delete();
-						}
+		// 2. 모든 게시판 유형의 파일 목록을 첨부파일 인덱스에서 조회 (디렉토리 탐색 없음)
+		int deleted = 0;
+		for (String boardCd : boardTypeRegistry.getBoardCodes()) {
+			String webDir = WEB_PATH + boardCd + "/";
+			Map<String, FileEntry> snapshot = attachmentIndex.snapshot(boardCd);
+			Map<String, String> origins = null;
+			for (Map.Entry<String, FileEntry> e : snapshot.entrySet()) {
+				String fileName = e.getKey();
+				if (!isTarget(fileName, e.getValue().getLastModified(), 0, until)
+						|| isReferenced(webDir, fileName, fileSet, baseSet)) {
+					continue;
+				}
+				// 변환본은 원본의 수정시간도 확인하도록 원본 경로를 함께 전달
+				String origin = fileName;
+				String base = Utils.variantOrigin(fileName);
+				if (base != null) {
+					if (origins == null) {
+						origins = originNames(snapshot);
 					}
+					origin = origins.get(base);
+				}
+				if (delete(webDir + fileName, origin == null ? null : webDir + origin, until)) {
+					deleted++;
 				}
 			}
 		}
+		log.debug("파일 정리 완료 (전체) - 삭제 {}건", deleted);
+	}
+	
+	// 이미 검사한 파일이거나 유예기간 이내의 파일, 저장중인 임시파일(.으로 시작)은 제외
+	private boolean isTarget(String fileName, long lastModified, long from, long until) {
+		return lastModified > from && lastModified <= until && !fileName.startsWith(".");
+	}
+	
+	// 폴더 안 원본 파일의 (확장자를 제외한 이름 -> 파일명)
+	private Map<String, String> originNames(Map<String, FileEntry> snapshot) {
+		Map<String, String> origins = new HashMap<>();
+		for (String fileName : snapshot.keySet()) {
+			if (Utils.variantOrigin(fileName) == null && !fileName.startsWith(".")) {
+				int dot = fileName.lastIndexOf(".");
+				origins.put(dot == -1 ? fileName : fileName.substring(0, dot), fileName);
+			}
+		}
+		return origins;
+	}
+	
+	// 인덱스의 수정시간은 예전 값일 수 있으므로 삭제 직전에 디스크의 수정시간을 다시 확인 (UploadPipeline.deleteOrphan)
+	private boolean delete(String webPath, String originPath, long until) {
+		boolean deleted = uploadPipeline.deleteOrphan(webPath, originPath, until);
+		if (deleted) {
+			log.debug("{} 삭제완료", webPath);
+		}
+		return deleted;
+	}
+	
+	// 썸네일/너비별 이미지(원본명_thumb.png 등)는 원본 파일이 DB에 있는지로 판단
+	private boolean isReferenced(String webDir, String fileName, Set<String> fileSet, Set<String> baseSet) {
+		if (fileSet.contains(webDir + fileName)) {
+			return true;
+		}
+		String base = Utils.variantOrigin(fileName);
+		return base != null && baseSet.contains(webDir + base);
 	}
 }
@@ -0,0 +1,83 @@
+package com.kh.spring.common.scheduling.model.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import com.kh.spring.common.scheduling.model.vo.JobRunHistory;
+
+@Repository
+public class JobLockDao {
+	
+	@Autowired
+	private SqlSessionTemplate session;
+	
+	/*
+	 * 잠금 획득 (잠금이 만료된 경우에만 갱신되므로 동시에 여러 서버가 시도해도 한 서버만 성공)
+	 * UPDATE JOB_LOCK
+	 *    SET LOCKED_BY = #{lockedBy}, LOCKED_AT = SYSTIMESTAMP,
+	 *        LOCKED_UNTIL = SYSTIMESTAMP + NUMTODSINTERVAL(#{lockMillis} / 1000, 'SECOND')
+	 *  WHERE JOB_NAME = #{jobName} AND LOCKED_UNTIL <= SYSTIMESTAMP
+	 * 처음 실행되는 작업이라 행이 없으면 INSERT, 다른 서버가 먼저 INSERT 했다면 PK 중복으로 실패
+	 */
+	public boolean acquireLock(String jobName, String lockedBy, long lockMillis) {
+		Map<String, Object> param = new HashMap<>();
+		param.put("jobName", jobName);
+		param.put("lockedBy", lockedBy);
+		param.put("lockMillis", lockMillis);
+		if (session.update("jobLock.acquireLock", param) > 0) {
+			return true;
+		}
+		try {
+			return session.insert("jobLock.insertLock", param) > 0;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+	
+	/*
+	 * 잠금 해제. 최소 유지시간(keepMillis)이 남아있다면 그때까지는 다른 서버가 다시 실행하지 않도록 유지
+	 * UPDATE JOB_LOCK
+	 *    SET LOCKED_UNTIL = GREATEST(SYSTIMESTAMP, LOCKED_AT + NUMTODSINTERVAL(#{keepMillis} / 1000, 'SECOND'))
+	 *  WHERE JOB_NAME = #{jobName} AND LOCKED_BY = #{lockedBy}
+	 */
+	public int releaseLock(String jobName, String lockedBy, long keepMillis) {
+		Map<String, Object> param = new HashMap<>();
+		param.put("jobName", jobName);
+		param.put("lockedBy", lockedBy);
+		param.put("keepMillis", keepMillis);
+		return session.update("jobLock.releaseLock", param);
+	}
+	
+	// SELECT WATERMARK FROM JOB_LOCK WHERE JOB_NAME = #{jobName}
+	public Long selectWatermark(String jobName) {
+		return session.selectOne("jobLock.selectWatermark", jobName);
+	}
+	
+	/*
+	 * 잠금을 가진 서버만 진행 위치를 갱신
+	 * UPDATE JOB_LOCK SET WATERMARK = #{watermark}
+	 *  WHERE JOB_NAME = #{jobName} AND LOCKED_BY = #{lockedBy}
+	 */
+	public int updateWatermark(String jobName, String lockedBy, long watermark) {
+		Map<String, Object> param = new HashMap<>();
+		param.put("jobName", jobName);
+		param.put("lockedBy", lockedBy);
+		param.put("watermark", watermark);
+		return session.update("jobLock.updateWatermark", param);
+	}
+	
+	public int insertRunHistory(JobRunHistory history) {
+		return session.insert("jobLock.insertRunHistory", history);
+	}
+	
+	// 보관기간이 지난 실행 이력 삭제
+	// DELETE FROM JOB_RUN_HISTORY WHERE START_TIME < SYSTIMESTAMP - NUMTODSINTERVAL(#{retentionDays}, 'DAY')
+	public int deleteRunHistory(int retentionDays) {
+		return session.delete("jobLock.deleteRunHistory", retentionDays);
+	}
+}
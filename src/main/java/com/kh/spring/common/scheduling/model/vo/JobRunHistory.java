@@ -0,0 +1,18 @@
+package com.kh.spring.common.scheduling.model.vo;
+
+import java.util.Date;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@Data
+public class JobRunHistory {
+	private int runNo;
+	private String jobName;
+	private String runBy; // 작업을 수행한 서버 (호스트명:pid)
+	private Date startTime;
+	private long duration; // 수행시간 (ms)
+	private String status; // S : 성공, F : 실패
+	private String errorMsg;
+}
@@ -0,0 +1,162 @@
+package com.kh.spring.common.template;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+public class FileDownload {
+	
+	// 톰캣 sendfile 요청 속성
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+	
+	/*
+	 * 첨부파일 다운로드 템플릿
+	 *  - 파일 전체를 Resource로 감싸서 반환하지 않고 응답으로 바로 전송
+	 *    톰캣이 sendfile을 지원하면(NIO/APR 커넥터) 요청 속성으로 파일 경로와 구간만 넘기고 톰캣이 커널 sendfile로 전송
+	 *    지원하지 않으면 FileChannel.transferTo로 응답 스트림에 복사 (서블릿 스트림은 소켓 채널이 아니므로 버퍼 복사가 일어남)
+	 *  - ETag / Last-Modified 헤더를 내려주고, If-None-Match / If-Modified-Since 요청에는 304로 응답
+	 *  - Range 요청(bytes=시작-끝)을 처리하여 이어받기(206 Partial Content)를 지원
+	 *    여러 구간을 요청하는 multipart range는 지원하지 않으므로 전체 파일로 응답
+	 */
+	public static void send(File file, String originName, HttpServletRequest req, HttpServletResponse res)
+			throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified() / 1000 * 1000; // http 날짜 헤더는 초 단위
+		String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+		res.setHeader(HttpHeaders.ETAG, etag);
+		res.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+		res.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		// 1. 조건부 요청 처리 : 브라우저가 가진 파일이 최신이면 본문 없이 304 응답
+		if (isNotModified(req, etag, lastModified)) {
+			res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		// 2. Range 요청 처리
+		long start = 0;
+		long end = length - 1;
+		String range = req.getHeader(HttpHeaders.RANGE);
+		String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+		if (range != null && (ifRange == null || ifRange.equals(etag))) {
+			long[] parsed = parseRange(range, length);
+			if (parsed == null) {
+				// 파일 크기를 벗어난 구간 요청
+				res.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+				res.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			if (parsed.length == 2) {
+				start = parsed[0];
+				end = parsed[1];
+				res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				res.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+		long count = end - start + 1;
+
+		res.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		res.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(originName));
+		res.setContentLengthLong(count);
+
+		// 3. 파일 전송
+		//  1) sendfile 지원 시 : 본문을 쓰지 않고 톰캣에 전송을 맡김 (end는 마지막 바이트 다음 위치)
+		if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+			req.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+			req.setAttribute(SENDFILE_START, start);
+			req.setAttribute(SENDFILE_END, end + 1);
+			return;
+		}
+		//  2) 미지원 시 : 응답 스트림에 직접 복사
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			WritableByteChannel out = Channels.newChannel(res.getOutputStream());
+			long position = start;
+			long remaining = count;
+			while (remaining > 0) {
+				long sent = channel.transferTo(position, remaining, out);
+				if (sent <= 0) {
+					break;
+				}
+				position += sent;
+				remaining -= sent;
+			}
+		}
+	}
+
+	private static boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+		String ifNoneMatch = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			// If-None-Match가 있으면 If-Modified-Since보다 우선한다
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		try {
+			long ifModifiedSince = req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+			return ifModifiedSince != -1 && ifModifiedSince >= lastModified;
+		} catch (IllegalArgumentException e) {
+			return false; // 날짜 형식이 잘못된 경우 무시
+		}
+	}
+
+	// 반환값 : {시작, 끝} - 구간 요청, 빈 배열 - 무시하고 전체 전송, null - 만족할 수 없는 구간
+	private static long[] parseRange(String range, long length) {
+		if (!range.startsWith("bytes=") || range.indexOf(',') != -1) {
+			return new long[0];
+		}
+		String spec = range.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash == -1) {
+			return new long[0];
+		}
+		try {
+			long start;
+			long end;
+			if (dash == 0) {
+				// bytes=-500 : 마지막 500바이트
+				long suffix = Long.parseLong(spec.substring(1));
+				if (suffix <= 0) {
+					return null;
+				}
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, dash));
+				end = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+				end = Math.min(end, length - 1);
+			}
+			if (start >= length || start > end) {
+				return null;
+			}
+			return new long[] {start, end};
+		} catch (NumberFormatException e) {
+			return new long[0];
+		}
+	}
+
+	// 한글 파일명을 위해 기존 방식(iso-8859-1)과 RFC 5987 방식(filename*)을 함께 지정
+	private static String contentDisposition(String originName) throws UnsupportedEncodingException {
+		String filename = new String(originName.getBytes("utf-8"), "iso-8859-1");
+		String encoded = URLEncoder.encode(originName, "utf-8").replace("+", "%20");
+		return "attachment;filename=\"" + filename + "\";filename*=UTF-8''" + encoded;
+	}
+}
@@ -24,5 +24,33 @@ public class Pagination {
 		pi.setMaxPage(maxPage);
 		return pi;
 	}
+	
+	// 키셋(seek) 페이징 정보 생성
+	//  - 총 갯수(listCount)가 필요 없으므로 COUNT 쿼리 없이 생성 가능
+	//  - cursor가 0이면 첫 페이지(가장 최신글부터)
+	public static PageInfo getKeysetPageInfo(int cursor, String direction, int boardLimit) {
+		PageInfo pi = new PageInfo();
+		pi.setKeyset(true);
+		pi.setBoardLimit(boardLimit);
+		pi.setCursor(cursor < 0 ? 0 : cursor);
+		pi.setDirection("prev".equals(direction) && cursor > 0 ? "prev" : "next");
+		return pi;
+	}
+	
+	// 조회 결과로 이전/다음 커서 설정
+	//  - hasMore : boardLimit+1개를 조회했을 때 한 건이 더 조회되었는지 여부
+	//  - firstBoardNo, lastBoardNo : 화면에 보여질 순서(BOARD_NO 내림차순) 기준의 첫번째, 마지막 글번호
+	public static void setKeysetResult(PageInfo pi, boolean hasMore, int firstBoardNo, int lastBoardNo) {
+		pi.setFirstBoardNo(firstBoardNo);
+		pi.setLastBoardNo(lastBoardNo);
+		if ("prev".equals(pi.getDirection())) {
+			// 이전 페이지로 이동한 경우 다음 페이지(원래 있던 페이지)는 항상 존재
+			pi.setHasPrev(hasMore);
+			pi.setHasNext(true);
+		} else {
+			pi.setHasPrev(pi.getCursor() > 0);
+			pi.setHasNext(hasMore);
+		}
+	}
 
 }
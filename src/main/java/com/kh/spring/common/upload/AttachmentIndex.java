@@ -0,0 +1,336 @@
+package com.kh.spring.common.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.ServletContext;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.kh.spring.board.model.service.BoardService;
+import com.kh.spring.board.model.service.BoardTypeRegistry;
+import com.kh.spring.board.model.service.BoardTypeRegistry.BoardTypeChangedEvent;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 첨부파일 인덱스
+ *  - 서버 시작 시 게시판별 첨부파일 폴더를 한 번만 탐색하여 파일 목록(크기, 수정시간)을 메모리에 보관
+ *  - 이후에는 WatchService로 파일 생성/수정/삭제 이벤트를 받아 갱신 => listFiles()로 폴더를 반복 탐색하지 않음
+ *  - 게시판 유형이 변경되면(BoardTypeChangedEvent) 새 게시판 폴더는 감시를 시작하고, 없어진 게시판 폴더는 감시를 중단
+ *  - 게시판별, 회원별 사용량을 함께 관리하여 고아파일 정리, 사용량 조회, 업로드 용량 제한을 상수 시간에 처리
+ *  - 회원별 사용량은 BOARD_IMG + BOARD 작성자 정보로 초기화하고, 이후에는 첨부파일 등록/삭제 트랜잭션이 커밋될 때 갱신
+ *    같은 내용의 파일은 하나만 저장되지만 사용량은 참조(BOARD_IMG 행)마다 게시글 작성자에게 계산
+ *    => 먼저 올린 회원이 글을 지워도 다른 회원의 사용량에 남고, 마지막 참조가 없어지면 소유 정보도 제거
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttachmentIndex {
+
+	private static final String WEB_PATH = "/resources/images/board/";
+
+	private final ServletContext application;
+	private final BoardService boardService;
+	private final BoardTypeRegistry boardTypeRegistry;
+
+	@Getter
+	public static class FileEntry {
+		private final long size;
+		private final long lastModified;
+
+		private FileEntry(long size, long lastModified) {
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	// key : 게시판코드, value : (파일명, 파일정보)
+	private final Map<String, Map<String, FileEntry>> files = new HashMap<>();
+	private final Map<String, Long> boardUsage = new HashMap<>(); // 게시판별 사용량(byte)
+	private final Map<String, Map<Integer, Integer>> owners = new HashMap<>(); // 웹경로 -> (회원번호 -> 참조 수)
+	private final Map<Integer, Long> userUsage = new HashMap<>(); // 회원별 사용량(byte)
+
+	private WatchService watchService;
+	private final Map<WatchKey, String> watchKeys = new ConcurrentHashMap<>(); // 감시키 -> 게시판코드 (감시 스레드에서도 조회)
+
+	@PostConstruct
+	public void init() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+		for (String boardCd : boardTypeRegistry.getBoardCodes()) {
+			register(boardCd);
+		}
+		for (Map<String, Object> row : boardService.selectFileOwnerList()) {
+			Object writer = row.get("BOARD_WRITER");
+			if (writer != null) {
+				addReference((String) row.get("CHANGE_NAME"), ((Number) writer).intValue(),
+						((Number) row.get("REF_COUNT")).intValue());
+			}
+		}
+		Thread watcher = new Thread(this::watch, "attachment-index-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		log.info("첨부파일 인덱스 초기화 완료 : {}", boardUsage);
+	}
+
+	private synchronized void register(String boardCd) throws IOException {
+		File dir = new File(application.getRealPath(WEB_PATH + boardCd));
+		dir.mkdirs();
+		WatchKey key = dir.toPath().register(watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY,
+				StandardWatchEventKinds.ENTRY_DELETE);
+		watchKeys.put(key, boardCd);
+		reload(boardCd);
+	}
+
+	/*
+	 * 게시판 유형 변경 시 감시 폴더 갱신 (BoardTypeRegistry가 먼저 다시 조회한 뒤 실행되도록 가장 나중에 처리)
+	 *  - 새 게시판 : 폴더 감시 시작 + 파일 목록 읽기
+	 *  - 없어진 게시판 : 감시 중단 + 파일 목록/사용량 제거 (파일 자체는 삭제하지 않음)
+	 */
+	@EventListener(BoardTypeChangedEvent.class)
+	@Order(Ordered.LOWEST_PRECEDENCE)
+	public synchronized void refreshWatchDirs() throws IOException {
+		Set<String> boardCodes = boardTypeRegistry.getBoardCodes();
+		for (Iterator<Map.Entry<WatchKey, String>> it = watchKeys.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<WatchKey, String> e = it.next();
+			if (!boardCodes.contains(e.getValue())) {
+				e.getKey().cancel();
+				it.remove();
+				unload(e.getValue());
+				log.info("첨부파일 폴더 감시 중단 : {}", e.getValue());
+			}
+		}
+		for (String boardCd : boardCodes) {
+			if (!watchKeys.containsValue(boardCd)) {
+				register(boardCd);
+				log.info("첨부파일 폴더 감시 시작 : {}", boardCd);
+			}
+		}
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				String boardCd = watchKeys.get(key);
+				if (boardCd == null) {
+					continue; // 감시를 중단한 게시판 폴더
+				}
+				Path dir = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					try {
+						handle(boardCd, dir, event);
+					} catch (RuntimeException e) {
+						// 이벤트 하나를 처리하지 못해도 감시 스레드는 계속 실행. 해당 폴더를 다시 읽어서 맞춤
+						log.warn("첨부파일 인덱스 이벤트 처리 실패 : {} {}", boardCd, event.context(), e);
+						reloadQuietly(boardCd);
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			log.debug("첨부파일 인덱스 감시 종료");
+		}
+	}
+
+	private void handle(String boardCd, Path dir, WatchEvent<?> event) {
+		if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+			// 이벤트가 유실된 경우 해당 폴더만 다시 읽음
+			reload(boardCd);
+			return;
+		}
+		Path name = (Path) event.context();
+		File file = dir.resolve(name).toFile();
+		if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE || !file.isFile()) {
+			remove(boardCd, name.toString());
+		} else {
+			put(boardCd, name.toString(), file);
+		}
+	}
+
+	private void reloadQuietly(String boardCd) {
+		try {
+			reload(boardCd);
+		} catch (RuntimeException e) {
+			log.error("첨부파일 폴더 다시 읽기 실패 : {}", boardCd, e);
+		}
+	}
+
+	private synchronized void reload(String boardCd) {
+		unload(boardCd);
+		File[] list = new File(application.getRealPath(WEB_PATH + boardCd)).listFiles();
+		if (list != null) {
+			for (File file : list) {
+				if (file.isFile()) {
+					put(boardCd, file.getName(), file);
+				}
+			}
+		}
+	}
+
+	private synchronized void unload(String boardCd) {
+		Map<String, FileEntry> entries = files.get(boardCd);
+		if (entries != null) {
+			for (String fileName : new ArrayList<>(entries.keySet())) {
+				remove(boardCd, fileName);
+			}
+		}
+		files.remove(boardCd);
+		boardUsage.remove(boardCd);
+	}
+
+	private synchronized void put(String boardCd, String fileName, File file) {
+		remove(boardCd, fileName);
+		FileEntry entry = new FileEntry(file.length(), file.lastModified());
+		files.computeIfAbsent(boardCd, k -> new HashMap<>()).put(fileName, entry);
+		boardUsage.merge(boardCd, entry.size, Long::sum);
+		chargeOwners(WEB_PATH + boardCd + "/" + fileName, entry.size);
+	}
+
+	private synchronized void remove(String boardCd, String fileName) {
+		Map<String, FileEntry> entries = files.get(boardCd);
+		FileEntry entry = entries == null ? null : entries.remove(fileName);
+		if (entry == null) {
+			return;
+		}
+		boardUsage.merge(boardCd, -entry.size, Long::sum);
+		chargeOwners(WEB_PATH + boardCd + "/" + fileName, -entry.size);
+	}
+
+	// 파일 크기 변동을 참조 수만큼 각 회원의 사용량에 반영
+	private void chargeOwners(String changeName, long size) {
+		Map<Integer, Integer> refs = owners.get(changeName);
+		if (refs != null) {
+			refs.forEach((userNo, count) -> charge(userNo, size * count));
+		}
+	}
+
+	private void charge(int userNo, long size) {
+		if (userUsage.merge(userNo, size, Long::sum) <= 0) {
+			userUsage.remove(userNo);
+		}
+	}
+
+	// 첨부파일 등록 트랜잭션이 커밋되면 참조 추가 (userNo : 게시글 작성자)
+	public void addReferencesAfterCommit(List<String> changeNames, int userNo) {
+		afterCommit(() -> {
+			for (String changeName : changeNames) {
+				addReference(changeName, userNo, 1);
+			}
+		});
+	}
+
+	// 첨부파일 삭제/교체 트랜잭션이 커밋되면 참조 제거
+	public void removeReferencesAfterCommit(List<String> changeNames, int userNo) {
+		afterCommit(() -> {
+			for (String changeName : changeNames) {
+				removeReference(changeName, userNo);
+			}
+		});
+	}
+
+	private void afterCommit(Runnable task) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			task.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				task.run();
+			}
+		});
+	}
+
+	private synchronized void addReference(String changeName, int userNo, int count) {
+		if (changeName == null) {
+			return;
+		}
+		owners.computeIfAbsent(changeName, k -> new HashMap<>()).merge(userNo, count, Integer::sum);
+		FileEntry entry = find(changeName);
+		if (entry != null) {
+			charge(userNo, entry.size * count);
+		}
+	}
+
+	// 마지막 참조가 없어지면 소유 정보도 제거 (owners가 계속 늘어나지 않도록)
+	private synchronized void removeReference(String changeName, int userNo) {
+		Map<Integer, Integer> refs = changeName == null ? null : owners.get(changeName);
+		if (refs == null || !refs.containsKey(userNo)) {
+			return;
+		}
+		if (refs.merge(userNo, -1, Integer::sum) <= 0) {
+			refs.remove(userNo);
+			if (refs.isEmpty()) {
+				owners.remove(changeName);
+			}
+		}
+		FileEntry entry = find(changeName);
+		if (entry != null) {
+			charge(userNo, -entry.size);
+		}
+	}
+
+	// 게시판 폴더의 파일 목록 (복사본)
+	public synchronized Map<String, FileEntry> snapshot(String boardCd) {
+		Map<String, FileEntry> entries = files.get(boardCd);
+		return entries == null ? new HashMap<>() : new HashMap<>(entries);
+	}
+
+	public synchronized long getBoardUsage(String boardCd) {
+		return boardUsage.getOrDefault(boardCd, 0L);
+	}
+
+	public synchronized long getUserUsage(int userNo) {
+		return userUsage.getOrDefault(userNo, 0L);
+	}
+
+	public synchronized Map<String, Long> getBoardUsage() {
+		return new HashMap<>(boardUsage);
+	}
+
+	private FileEntry find(String changeName) {
+		if (!changeName.startsWith(WEB_PATH)) {
+			return null;
+		}
+		String path = changeName.substring(WEB_PATH.length());
+		int slash = path.indexOf('/');
+		if (slash == -1) {
+			return null;
+		}
+		Map<String, FileEntry> entries = files.get(path.substring(0, slash));
+		return entries == null ? null : entries.get(path.substring(slash + 1));
+	}
+
+	@PreDestroy
+	public void destroy() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+		}
+	}
+}
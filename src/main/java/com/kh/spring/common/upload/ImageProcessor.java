@@ -0,0 +1,140 @@
+package com.kh.spring.common.upload;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.servlet.ServletContext;
+
+import org.springframework.stereotype.Component;
+
+import com.kh.spring.common.Utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 사진게시판 이미지 후처리
+ *  - 원본 사진(카메라 원본은 수 MB)을 목록/상세화면에 그대로 보내지 않도록 축소본을 생성
+ *  - 썸네일(thumb)과 너비별 이미지(w320, w640, w1024)를 원본과 같은 폴더에 저장
+ *    ex) 2025070911401622627.png -> 2025070911401622627_thumb.png, 2025070911401622627_w320.png ...
+ *  - 경로는 Utils.variantName 규칙으로 계산되므로 BoardImg에서 바로 꺼내 쓸 수 있다
+ *  - 외부 라이브러리 없이 JDK의 ImageIO만 사용
+ *  - 업로드 요청 스레드를 막지 않도록 별도의 스레드풀에서 처리
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageProcessor {
+
+	public static final int THUMBNAIL_WIDTH = 200;
+	// 디코딩 전 확인하는 최대 픽셀 수 (약 4천만 픽셀, ARGB 기준 160MB). 파일은 작아도 픽셀 수가 큰 이미지(decompression bomb) 방지
+	private static final long MAX_PIXELS = 40_000_000L;
+
+	private final ServletContext application;
+
+	// 이미지 처리는 CPU를 많이 사용하므로 스레드 2개로 제한, 대기열이 가득 차면 처리하지 않음(원본 사용)
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+			2, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(200),
+			new ThreadPoolExecutor.DiscardPolicy());
+
+	// changeName : 원본 이미지의 웹 경로
+	public void processAsync(String changeName) {
+		executor.execute(() -> process(changeName));
+	}
+
+	public void process(String changeName) {
+		File origin = new File(application.getRealPath(changeName));
+		try {
+			BufferedImage image = readImage(origin, changeName);
+			if (image == null) {
+				return; // 이미지가 아니거나 ImageIO가 지원하지 않는 형식, 또는 너무 큰 이미지
+			}
+			String format = outputFormat(changeName);
+			write(resize(image, THUMBNAIL_WIDTH, format), format, Utils.variantName(changeName, Utils.THUMBNAIL));
+			for (int width : Utils.IMAGE_WIDTHS) {
+				// 원본보다 큰 너비는 확대하지 않고 원본 크기로 저장 (srcset에서 항상 파일이 존재하도록)
+				write(resize(image, width, format), format, Utils.variantName(changeName, "w" + width));
+			}
+			log.debug("이미지 변환 완료 : {}", changeName);
+		} catch (IOException e) {
+			log.error("이미지 변환 실패 : {}", changeName, e);
+		}
+	}
+
+	// 헤더에서 가로/세로 크기를 먼저 읽고, MAX_PIXELS 이하인 경우에만 디코딩
+	private BufferedImage readImage(File origin, String changeName) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(origin)) {
+			if (in == null) {
+				return null;
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+				if (pixels > MAX_PIXELS) {
+					log.warn("이미지 크기 초과로 변환하지 않음 : {} ({} x {})", changeName, reader.getWidth(0), reader.getHeight(0));
+					return null;
+				}
+				return reader.read(0);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private void write(BufferedImage image, String format, String webPath) throws IOException {
+		ImageIO.write(image, format, new File(application.getRealPath(webPath)));
+	}
+
+	// 가로 width에 맞춰 비율 유지 축소. 한 번에 크게 줄이면 품질이 떨어지므로 절반씩 단계적으로 축소
+	private BufferedImage resize(BufferedImage image, int width, String format) {
+		int type = "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		int targetWidth = Math.min(width, image.getWidth());
+		int targetHeight = Math.max(1, (int) ((long) image.getHeight() * targetWidth / image.getWidth()));
+
+		BufferedImage current = image;
+		int w = image.getWidth();
+		int h = image.getHeight();
+		do {
+			w = Math.max(targetWidth, w / 2);
+			h = Math.max(targetHeight, h / 2);
+			BufferedImage next = new BufferedImage(w, h, type);
+			Graphics2D g = next.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(current, 0, 0, w, h, null);
+			g.dispose();
+			current = next;
+		} while (w != targetWidth || h != targetHeight);
+		return current;
+	}
+
+	// 원본 확장자 형식으로 저장하되 ImageIO가 쓸 수 없는 형식(gif 등)은 png로 저장
+	private String outputFormat(String changeName) {
+		String ext = changeName.substring(changeName.lastIndexOf('.') + 1).toLowerCase();
+		if (ext.equals("jpg") || ext.equals("jpeg")) {
+			return "jpg";
+		}
+		return "png";
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+	}
+}
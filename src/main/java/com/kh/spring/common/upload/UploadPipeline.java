@@ -0,0 +1,303 @@
+package com.kh.spring.common.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.ServletContext;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.kh.spring.board.model.vo.BoardImg;
+import com.kh.spring.common.Utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * 첨부파일 업로드 파이프라인
+ *  1. stage : 업로드된 파일들을 제한된 크기의 스레드풀에서 병렬로 임시폴더(.tmp)에 저장
+ *  2. commit : 게시글 등록/수정 트랜잭션이 커밋되면 임시파일을 실제 경로로 이동(move)
+ *     롤백되면 임시파일을 삭제 => DB에 없는 파일이 게시판 폴더에 남지 않음
+ *     사진게시판 이미지는 이동 후 ImageProcessor로 썸네일/너비별 이미지 생성
+ *     서비스가 commit을 등록하기 전에 실패하면 호출한 쪽(컨트롤러)의 finally에서 release로 바로 삭제
+ *  3. 서버가 중간에 종료되는 등 커밋/롤백 처리를 받지 못한 임시파일은 스케쥴러로 정리
+ *  4. delete : 삭제된 첨부파일은 트랜잭션이 커밋되면 백그라운드에서 실제 파일(변환본 포함)을 삭제
+ *     같은 내용의 파일을 다른 게시글이 등록하는 중일 수 있으므로 이동(commit)과 삭제는 fileLock으로 순서를 보장
+ *     FileDeleteTask의 고아파일 삭제도 deleteOrphan으로 같은 fileLock 안에서 처리
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadPipeline {
+
+	private static final String WEB_PATH = "/resources/images/board/";
+	private static final String TEMP_DIR = ".tmp"; // 게시판 코드 폴더가 아니므로 FileDeleteTask 대상이 아님
+	private static final long TEMP_EXPIRE = 60 * 60 * 1000; // 임시파일 보관시간 (1시간)
+	private static final String PHOTO_BOARD = "P"; // 썸네일/너비별 이미지를 생성할 게시판
+
+	private final ServletContext application;
+	private final ImageProcessor imageProcessor;
+
+	// 파일 쓰기 전용 스레드풀. 대기열이 가득 차면 요청 스레드에서 직접 저장(CallerRunsPolicy)
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+			4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(100),
+			new ThreadPoolExecutor.CallerRunsPolicy());
+
+	// key : 컨트롤러에서 생성한 BoardImg 객체, value : 커밋 대기중인 임시파일
+	//  - 같은 내용의 파일은 changeName이 같으므로 changeName이 아닌 객체 자체(identity)로 구분
+	private final Map<BoardImg, StagedFile> staged = Collections.synchronizedMap(new IdentityHashMap<>());
+	
+	private final Object fileLock = new Object();
+
+	@Getter
+	public static class StagedFile {
+		private final String originName; // 원본 파일명
+		private final String changeName; // 최종 웹 경로 (/resources/images/board/N/{sha-256}.png)
+		private final File tempFile;
+
+		private StagedFile(String originName, String changeName, File tempFile) {
+			this.originName = originName;
+			this.changeName = changeName;
+			this.tempFile = tempFile;
+		}
+	}
+
+	// 비어있지 않은 파일들을 병렬로 임시저장 후 모두 완료되면 반환 (업로드 순서 유지)
+	public List<StagedFile> stage(List<MultipartFile> upfiles, String boardCode) {
+		List<StagedFile> result = new ArrayList<>();
+		if (upfiles == null) {
+			return result;
+		}
+		File tempDir = new File(application.getRealPath(WEB_PATH), TEMP_DIR);
+		if (!tempDir.exists()) {
+			tempDir.mkdirs();
+		}
+		List<Future<StagedFile>> futures = new ArrayList<>();
+		for (MultipartFile upfile : upfiles) {
+			if (upfile.isEmpty()) {
+				continue;
+			}
+			futures.add(executor.submit(() -> {
+				// 저장하면서 내용의 해시값으로 최종 파일명 결정
+				File tempFile = new File(tempDir, UUID.randomUUID() + ".upload");
+				String fileName = Utils.writeWithHash(upfile, tempFile);
+				return new StagedFile(upfile.getOriginalFilename(), WEB_PATH + boardCode + "/" + fileName, tempFile);
+			}));
+		}
+		try {
+			for (Future<StagedFile> future : futures) {
+				result.add(future.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			futures.forEach(f -> f.cancel(true));
+			discard(result);
+			throw new RuntimeException("첨부파일 저장 실패", e);
+		}
+		return result;
+	}
+
+	// 임시저장된 파일 정보로 BoardImg 생성 (커밋 시 어떤 임시파일을 이동할지 기억해둠)
+	public BoardImg newBoardImg(StagedFile file) {
+		BoardImg bi = new BoardImg();
+		bi.setChangeName(file.getChangeName());
+		bi.setOriginName(file.getOriginName());
+		staged.put(bi, file);
+		return bi;
+	}
+
+	// 현재 트랜잭션이 커밋되면 임시파일을 이동, 롤백되면 삭제
+	public void commitAfterTransaction(List<BoardImg> imgList) {
+		List<StagedFile> files = new ArrayList<>();
+		for (BoardImg bi : imgList) {
+			StagedFile file = staged.remove(bi);
+			if (file != null) {
+				files.add(file);
+			}
+		}
+		if (files.isEmpty()) {
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			commit(files);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == TransactionSynchronization.STATUS_COMMITTED) {
+					commit(files);
+				} else {
+					discard(files);
+				}
+			}
+		});
+	}
+
+	/*
+	 * 커밋 처리로 넘어가지 않은 임시파일 삭제 (newBoardImg를 호출한 쪽에서 finally로 호출)
+	 *  - commitAfterTransaction에서 이미 꺼내간 파일은 staged에 없으므로 영향 없음
+	 *  - 서비스에서 예외가 발생하여 commitAfterTransaction까지 가지 못한 경우 staged 항목과 임시파일이 남지 않도록 함
+	 */
+	public void release(List<BoardImg> imgList) {
+		List<StagedFile> files = new ArrayList<>();
+		for (BoardImg bi : imgList) {
+			StagedFile file = staged.remove(bi);
+			if (file != null) {
+				files.add(file);
+			}
+		}
+		if (!files.isEmpty()) {
+			discard(files);
+		}
+	}
+
+	private void commit(List<StagedFile> files) {
+		synchronized (fileLock) {
+			for (StagedFile file : files) {
+				moveFile(file);
+			}
+		}
+	}
+	
+	private void moveFile(StagedFile file) {
+		File target = new File(application.getRealPath(file.getChangeName()));
+		if (target.exists()) {
+			// 같은 내용의 파일이 이미 저장되어 있음 => 새로 저장하지 않고 기존 파일을 참조 (중복 제거)
+			// 수정시간을 갱신해서 고아파일 정리 대상에서 잠시 제외되도록 함
+			file.getTempFile().delete();
+			target.setLastModified(System.currentTimeMillis());
+			return;
+		}
+		try {
+			target.getParentFile().mkdirs();
+			Files.move(file.getTempFile().toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			// 사진게시판 이미지는 이동이 끝난 뒤 백그라운드에서 썸네일 생성
+			if (file.getChangeName().startsWith(WEB_PATH + PHOTO_BOARD + "/")) {
+				imageProcessor.processAsync(file.getChangeName());
+			}
+		} catch (FileAlreadyExistsException e) {
+			file.getTempFile().delete(); // 다른 요청이 동시에 같은 파일을 저장한 경우
+		} catch (IOException e) {
+			log.error("첨부파일 이동 실패 : {}", file.getChangeName(), e);
+		}
+	}
+
+	/*
+	 * 현재 트랜잭션이 커밋되면 첨부파일을 백그라운드에서 삭제 (롤백되면 아무것도 하지 않음)
+	 *  - referenced : 삭제 시점에 다른 게시글이 같은 파일을 참조하고 있는지 확인 (참조중이면 삭제하지 않음)
+	 *  - 확인과 삭제 사이에 같은 파일이 새로 커밋되지 않도록 fileLock 안에서 처리
+	 *    (아직 커밋 전인 업로드는 DB에서 보이지 않지만, 삭제 후 commit 시 대상 파일이 없으므로 임시파일을 그대로 이동)
+	 */
+	public void deleteAfterTransaction(List<String> changeNames, Predicate<String> referenced) {
+		if (changeNames.isEmpty()) {
+			return;
+		}
+		Runnable task = () -> executor.execute(() -> deleteFiles(changeNames, referenced));
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			task.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				task.run();
+			}
+		});
+	}
+	
+	private void deleteFiles(List<String> changeNames, Predicate<String> referenced) {
+		synchronized (fileLock) {
+			for (String changeName : changeNames) {
+				try {
+					if (referenced.test(changeName)) {
+						continue;
+					}
+				} catch (RuntimeException e) {
+					// 확인하지 못한 파일은 남겨두고 고아파일 정리 스케쥴러에 맡김
+					log.error("첨부파일 참조 확인 실패 : {}", changeName, e);
+					continue;
+				}
+				new File(application.getRealPath(changeName)).delete();
+				new File(application.getRealPath(Utils.variantName(changeName, Utils.THUMBNAIL))).delete();
+				for (int width : Utils.IMAGE_WIDTHS) {
+					new File(application.getRealPath(Utils.variantName(changeName, "w" + width))).delete();
+				}
+				log.debug("첨부파일 삭제 : {}", changeName);
+			}
+		}
+	}
+
+	/*
+	 * 고아파일 삭제 (FileDeleteTask 전용). 삭제했으면 true
+	 *  - 정리 작업은 DB를 조회한 뒤에 삭제하므로, 그 사이에 같은 내용의 파일이 커밋되면(moveFile은 수정시간만 갱신) 참조중인 파일을 지울 수 있음
+	 *    => commit과 같은 fileLock 안에서 디스크의 수정시간을 다시 확인하고 until 이후에 수정된 파일은 남겨둠
+	 *  - 변환본은 원본(originPath)의 수정시간도 확인 (원본이 다시 참조되면 변환본도 유지)
+	 */
+	public boolean deleteOrphan(String webPath, String originPath, long until) {
+		synchronized (fileLock) {
+			File file = new File(application.getRealPath(webPath));
+			if (file.lastModified() > until) {
+				return false;
+			}
+			if (originPath != null && !originPath.equals(webPath)
+					&& new File(application.getRealPath(originPath)).lastModified() > until) {
+				return false;
+			}
+			return file.delete();
+		}
+	}
+
+	public void discard(List<StagedFile> files) {
+		for (StagedFile file : files) {
+			file.getTempFile().delete();
+		}
+	}
+
+	// 커밋/롤백 처리되지 못하고 남은 오래된 임시파일 정리 (매 시간)
+	@Scheduled(fixedDelay = 60 * 60 * 1000)
+	public void cleanTempFiles() {
+		File tempDir = new File(application.getRealPath(WEB_PATH), TEMP_DIR);
+		File[] files = tempDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (File file : files) {
+			if (now - file.lastModified() > TEMP_EXPIRE) {
+				log.debug("임시파일 삭제 : {}", file.getName());
+				staged.values().removeIf(s -> s.getTempFile().equals(file));
+				file.delete();
+			}
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+	}
+}
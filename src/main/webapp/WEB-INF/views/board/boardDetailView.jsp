@@ -51,7 +51,10 @@
                               따라서 웹 경로상 (서버에 업로드된 URL 경로)에 있어야 접근이 가능하고, db같은데에 저장되는 경우
                               LOB같은 데이터를 꺼내서 브라우저로 이미지 파일 형태로 반환해야 함 (이과정에서 stream 필요할지도) 
                               -->
-                              <img src="${contextPath }${imgList[i].changeName}">
+                              <%-- 화면 너비에 맞는 변환본(w320/w640/w1024)을 사용하고, 아직 변환 전이면 원본으로 대체 --%>
+                              <img src="${contextPath }${imgList[i].changeName}"
+                                   srcset="${imgList[i].getSrcset(contextPath)}" sizes="(max-width: 640px) 100vw, 640px"
+                                   onerror="this.removeAttribute('srcset'); this.onerror=null;">
                               </a>
                            </td>
                         </tr>
@@ -62,7 +65,7 @@
                         <th>첨부파일</th>
                         <td>
                            <button type="button" class="btn btn-outline-success btn-block"
-                           onclick="location.href='${contextPath}/board/fileDownload/${board.boardNo }'">
+                           onclick="location.href='${contextPath}/board/fileDownload/img/${imgList[0].boardImgNo }'">
                               ${imgList[0].originName } - 다운로드
                            </button>
                         </td>
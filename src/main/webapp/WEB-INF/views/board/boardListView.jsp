@@ -76,7 +76,17 @@
                     <c:forEach var="board" items="${list }">
                         <tr onclick="movePage(${board.boardNo})">
                             <td>${board.boardNo }</td>
-                            <td>${board.boardTitle }</td>
+                            <td>
+                                <c:if test="${board.boardCd eq 'P' and not empty board.thumbName }">
+                                    <%-- 썸네일이 아직 생성되지 않았으면 원본으로 대체 --%>
+                                    <img class="list-thumbnail" src="${contextPath }${board.thumbName}"
+                                         onerror="this.onerror=null; this.src='${contextPath }${board.thumbnail}'">
+                                </c:if>
+                                ${board.boardTitle }
+                                <c:if test="${not empty board.snippet }">
+                                    <br><small class="text-muted">${board.snippet }</small>
+                                </c:if>
+                            </td>
                             <td>${board.boardWriter}</td>
                             <td>${board.count }</td>
                             <td>${board.createDate }</td>
@@ -98,6 +108,32 @@
         </c:if>
         <div id="pagingArea">
             <ul class="pagination">
+            <c:choose>
+            <%-- 키셋 페이징 : 글번호 커서 기반의 이전/다음 이동만 제공 --%>
+            <c:when test="${pi.keyset }">
+                <c:set var="keysetUrl" value="${boardCode}?mode=keyset"/>
+                <c:if test="${not pi.hasPrev }">
+                    <li class="page-item">
+                        <a class="page-link">Previous</a>
+                    </li>
+                </c:if>
+                <c:if test="${pi.hasPrev }">
+                    <li class="page-item">
+                        <a class="page-link" href="${keysetUrl}&direction=prev&cursor=${pi.firstBoardNo}${searchParam}">Previous</a>
+                    </li>
+                </c:if>
+                <c:if test="${not pi.hasNext }">
+                    <li class="page-item">
+                        <a class="page-link">Next</a>
+                    </li>
+                </c:if>
+                <c:if test="${pi.hasNext }">
+                    <li class="page-item">
+                        <a class="page-link" href="${keysetUrl}&direction=next&cursor=${pi.lastBoardNo}${searchParam}">Next</a>
+                    </li>
+                </c:if>
+            </c:when>
+            <c:otherwise>
                 <c:if test="${pi.currentPage eq 1 }">
                     <li class="page-item">
                         <a class="page-link">Previous</a>
@@ -123,10 +159,15 @@
                         <a class="page-link" href="${url}${pi.currentPage +1}${searchParam}">Next</a>
                     </li>
                 </c:if>
+            </c:otherwise>
+            </c:choose>
             </ul>
         </div>
         <br clear="both">
         <form id="searchForm" method="get" align="center" action="${boardCode }">
+            <c:if test="${pi.keyset }">
+                <input type="hidden" name="mode" value="keyset" />
+            </c:if>
             <div class="select">
                 <select class="custom-select" name="condition">
                     <option value="writer" ${param.condition eq 'writer' ? 'selected' : ''}>작성자</option>
@@ -67,6 +67,11 @@
 	.chatDate{
 		font-size : 10px;
 	}
+	#load-older{
+		display : block;
+		margin : 0 auto 5px;
+		font-size : 12px;
+	}
 </style>
 </head>
 <body>
@@ -77,15 +82,19 @@
                 <button class="btn btn-outline-danger" id="exit-btn">나가기</button>
             </div>
             <ul class="display-chatting">
+                <%-- 최근 메세지(최대 50개)만 보여주고 이전 메세지는 버튼으로 불러옴 (data-cm-no : 이전 대화 조회 커서) --%>
+                <c:if test="${list.size() ge 50}">
+                    <li><button class="btn btn-sm btn-outline-secondary" id="load-older">이전 대화 보기</button></li>
+                </c:if>
                 <c:forEach items="${list}" var="msg">
                     <c:if test='${msg.userNo eq loginUser.userNo }'>
-                        <li class="myChat">
+                        <li class="myChat" data-cm-no="${msg.cmNo}">
                             <span class="chatDate">${msg.createDate}</span>
                             <p class="chat">${msg.message}</p>
                         </li>
                     </c:if>
                     <c:if test="${msg.userNo ne loginUser.userNo }">
-                        <li>
+                        <li data-cm-no="${msg.cmNo}">
                             <b>${msg.userName }</b>
                             <p class="chat">${msg.message }</p>
                             <span class="chatDate">${msg.createDate }</span>
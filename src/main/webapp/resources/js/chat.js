@@ -37,7 +37,19 @@ chattingSocket.onmessage = function(e) {
     // 서버에서 전달한 json 데이터를 파싱
     const chatMessage = JSON.parse(e.data);
 
+    const li = createMessageItem(chatMessage);
+
+    const display = document.querySelector(".display-chatting");
+    display.append(li);
+    display.scrollTop = display.scrollHeight;
+};
+
+// 메세지 한 건을 li 요소로 생성 (실시간 메세지, 이전 대화 불러오기에서 같이 사용)
+function createMessageItem(chatMessage) {
     const li = document.createElement("li");
+    if (chatMessage.cmNo > 0) {
+        li.dataset.cmNo = chatMessage.cmNo;
+    }
     const p = document.createElement("p");
     p.classList.add("chat");
 
@@ -54,8 +66,38 @@ chattingSocket.onmessage = function(e) {
         li.innerHTML = `<b>${chatMessage.userName}</b>`;
         li.append(p, span);
     }
+    return li;
+}
 
+// 이전 대화 불러오기
+// 화면에 있는 메세지 중 가장 작은 메세지 번호(CM_NO)를 커서로 사용하여 그 이전 메세지를 조회
+const PAGE_SIZE = 50; // ChatHistory.PAGE_SIZE
+document.getElementById("load-older")?.addEventListener('click', function() {
     const display = document.querySelector(".display-chatting");
-    display.append(li);
-    display.scrollTop = display.scrollHeight;
-};
\ No newline at end of file
+    const numbers = [...display.querySelectorAll("li[data-cm-no]")]
+                    .map(li => Number(li.dataset.cmNo))
+                    .filter(no => no > 0);
+    if (numbers.length == 0) {
+        // 화면의 메세지가 모두 아직 저장되지 않은 메세지인 경우
+        alert("메세지를 저장중입니다. 잠시 후 다시 시도하세요");
+        return;
+    }
+    const before = Math.min(...numbers);
+    const button = this;
+
+    fetch(`${contextPath}/chat/room/${chatRoomNo}/messages?before=${before}`)
+        .then(res => res.json())
+        .then(list => {
+            const height = display.scrollHeight;
+            const first = button.parentElement.nextSibling;
+            for (const chatMessage of list) {
+                display.insertBefore(createMessageItem(chatMessage), first);
+            }
+            // 불러온 만큼 스크롤 위치를 유지
+            display.scrollTop += display.scrollHeight - height;
+            if (list.length < PAGE_SIZE) {
+                button.parentElement.remove(); // 더 이상 이전 메세지가 없음
+            }
+        })
+        .catch(err => console.log(err));
+});
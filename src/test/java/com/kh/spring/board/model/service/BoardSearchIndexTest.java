@@ -0,0 +1,191 @@
+package com.kh.spring.board.model.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kh.spring.board.model.vo.Board;
+
+public class BoardSearchIndexTest {
+
+	private BoardSearchIndex index;
+
+	@Before
+	public void setUp() {
+		index = new BoardSearchIndex(null); // put, search는 DB를 사용하지 않음
+	}
+
+	private void put(int boardNo, String title, String content) {
+		Board b = new Board();
+		b.setBoardNo(boardNo);
+		b.setBoardCd("N");
+		b.setBoardTitle(title);
+		b.setBoardContent(content);
+		b.setStatus("Y");
+		index.put(b);
+	}
+
+	private List<Integer> search(String condition, String keyword) {
+		Map<String, Object> paramMap = new HashMap<>();
+		paramMap.put("boardCode", "N");
+		paramMap.put("condition", condition);
+		paramMap.put("keyword", keyword);
+		return index.search(paramMap, 0, 100);
+	}
+
+	// 가변길이 정수 경계값(1, 2, 3, 5바이트)을 포함한 게시글번호와 등장위치가 그대로 읽혀야 함
+	@Test
+	public void postingsRoundTrip() {
+		int[] boardNos = {1, 127, 128, 16383, 16384, 2097152, Integer.MAX_VALUE};
+		int[][] positions = {{0}, {1, 127}, {128, 300, 16384}, {5}, {0, 1, 2}, {Integer.MAX_VALUE}, {7, 2097151}};
+		BoardSearchIndex.Postings postings = new BoardSearchIndex.Postings();
+		for (int i = 0; i < boardNos.length; i++) {
+			postings.append(boardNos[i], positions[i]);
+		}
+
+		int[][] decoded = postings.decode();
+		assertArrayEquals(boardNos, decoded[0]);
+		BoardSearchIndex.Cursor cursor = postings.cursor();
+		for (int i = 0; i < boardNos.length; i++) {
+			assertEquals(positions[i].length, decoded[1][i]);
+			assertTrue(cursor.next());
+			assertArrayEquals(positions[i], cursor.positions());
+		}
+		assertFalse(cursor.next());
+	}
+
+	// 등장위치를 읽지 않고 넘어가도 다음 게시글을 정확히 읽어야 함
+	@Test
+	public void cursorSkipsUnreadPositions() {
+		BoardSearchIndex.Postings postings = new BoardSearchIndex.Postings();
+		postings.append(10, new int[] {1, 200, 70000});
+		postings.append(300, new int[] {3});
+		postings.append(70000, new int[] {4, 5});
+
+		BoardSearchIndex.Cursor cursor = postings.cursor();
+		assertTrue(cursor.advance(300));
+		assertArrayEquals(new int[] {3}, cursor.positions());
+		assertTrue(cursor.next());
+		assertArrayEquals(new int[] {4, 5}, cursor.positions());
+		assertFalse(cursor.advance(70001));
+	}
+
+	@Test
+	public void postingsWithAndWithout() {
+		BoardSearchIndex.Postings postings = new BoardSearchIndex.Postings();
+		postings.append(1, new int[] {0});
+		postings.append(5, new int[] {2});
+
+		BoardSearchIndex.Postings added = postings.with(3, new int[] {1, 4});
+		assertArrayEquals(new int[] {1, 3, 5}, added.decode()[0]);
+		assertArrayEquals(new int[] {1, 2, 1}, added.decode()[1]);
+
+		BoardSearchIndex.Postings replaced = added.with(3, new int[] {9});
+		assertArrayEquals(new int[] {1, 3, 5}, replaced.decode()[0]);
+		assertArrayEquals(new int[] {1, 1, 1}, replaced.decode()[1]);
+
+		assertArrayEquals(new int[] {1, 5}, replaced.without(3).decode()[0]);
+		assertEquals(null, postings.without(1).without(5));
+	}
+
+	// 검색어의 bigram이 연속으로 나오는 게시글만 찾아야 함 ("게시판" != "게시 ... 시판")
+	@Test
+	public void bigramPhraseMatch() {
+		put(1, "공지", "게시판 사용법");
+		put(2, "공지", "게시 글과 시판");
+		put(3, "공지", "자유게시판을 이용해 주세요");
+
+		assertEquals(Arrays.asList(1, 3), sorted(search("content", "게시판")));
+		assertEquals(Arrays.asList(3), search("content", "게시판을"));
+		assertTrue(search("content", "시판게").isEmpty());
+	}
+
+	// 한 글자 검색은 그 글자로 시작하는 단어, 영문/숫자는 검색어를 포함하는 단어로 찾음
+	@Test
+	public void partialMatch() {
+		put(1, "spring 설정", "내용");
+		put(2, "springboot", "내용");
+		put(3, "java", "내용");
+
+		assertEquals(Arrays.asList(1, 2), sorted(search("title", "ring")));
+		assertEquals(Arrays.asList(2), search("title", "boot"));
+		assertEquals(Arrays.asList(1), search("title", "설"));
+		assertTrue(search("title", "python").isEmpty());
+	}
+
+	// 수정/삭제된 단어는 접미사 목록에서도 제거되어야 함
+	@Test
+	public void partialMatchAfterUpdate() {
+		put(1, "spring", "내용");
+		put(1, "java", "내용");
+		assertTrue(search("title", "ring").isEmpty());
+		assertEquals(Arrays.asList(1), search("title", "av"));
+
+		index.remove(1);
+		assertTrue(search("title", "av").isEmpty());
+	}
+
+	@Test
+	public void suffixIndexLongTerm() {
+		BoardSearchIndex.SuffixIndex suffixes = new BoardSearchIndex.SuffixIndex();
+		String longTerm = "abcdefghijklmnopqrstuvwxyz0123456789";
+		suffixes.add(longTerm);
+		suffixes.add("xyz");
+
+		assertEquals(new HashSet<>(Arrays.asList(longTerm, "xyz")), suffixes.find("xyz"));
+		assertEquals(new HashSet<>(Arrays.asList(longTerm)), suffixes.find("fghijklmnopqrstuvwxyz01"));
+		assertTrue(suffixes.find("fghijklmnopqrstuvwxyz02").isEmpty());
+
+		suffixes.remove(longTerm);
+		assertEquals(new HashSet<>(Arrays.asList("xyz")), suffixes.find("xyz"));
+	}
+
+	// BM25 : 제목에 있는 단어는 내용보다 가중치가 높고, 같은 위치라면 더 많이 나온 게시글이 앞에 옴
+	@Test
+	public void bm25Ordering() {
+		put(1, "공지", "spring 설명");
+		put(2, "공지", "spring spring 설명");
+		put(3, "spring 소개", "설명");
+		put(4, "공지", "설명");
+
+		assertEquals(Arrays.asList(3, 2, 1), search("titleAndContent", "spring"));
+		assertEquals(Arrays.asList(2, 1), search("content", "spring"));
+	}
+
+	// 점수가 같으면 최신글(번호가 큰 글) 순
+	@Test
+	public void sameScoreOrderedByBoardNo() {
+		put(1, "공지", "spring");
+		put(2, "공지", "spring");
+
+		assertEquals(Arrays.asList(2, 1), search("content", "spring"));
+	}
+
+	// 삭제(STATUS = 'N')된 게시글은 검색되지 않아야 함
+	@Test
+	public void removeDeletedBoard() {
+		put(1, "spring", "내용");
+		Board deleted = new Board();
+		deleted.setBoardNo(1);
+		deleted.setStatus("N");
+		index.put(deleted);
+
+		assertTrue(search("title", "spring").isEmpty());
+	}
+
+	private static List<Integer> sorted(List<Integer> list) {
+		Integer[] array = list.toArray(new Integer[0]);
+		Arrays.sort(array);
+		return Arrays.asList(array);
+	}
+}
@@ -0,0 +1,48 @@
+package com.kh.spring.chat.model.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+public class ChatMessageWriterTest {
+
+	// 다시 시도해도 실패하는 오류 : 한 건씩 저장 후 실패한 메세지만 dead letter로 옮김
+	@Test
+	public void permanentErrors() {
+		assertTrue(ChatMessageWriter.isPermanent(new DataIntegrityViolationException("중복")));
+		assertTrue(ChatMessageWriter.isPermanent(new RuntimeException(new SQLIntegrityConstraintViolationException("ORA-00001", "23000", 1))));
+		assertTrue(ChatMessageWriter.isPermanent(new RuntimeException(new SQLException("ORA-01400", "23000", 1400))));
+		assertTrue(ChatMessageWriter.isPermanent(new RuntimeException(new SQLException("ORA-01722", "22018", 1722))));
+		assertTrue(ChatMessageWriter.isPermanent(new RuntimeException(new SQLException("ORA-12899", "72000", 12899))));
+		assertTrue(ChatMessageWriter.isPermanent(new RuntimeException(new SQLException("ORA-01438", null, 1438))));
+	}
+
+	// 일시적인 오류 : 같은 묶음을 나중에 다시 시도
+	@Test
+	public void transientErrors() {
+		assertFalse(ChatMessageWriter.isPermanent(new RuntimeException("오류")));
+		assertFalse(ChatMessageWriter.isPermanent(new RuntimeException(new SQLNonTransientConnectionException("연결 끊김", "08006", 17002))));
+		assertFalse(ChatMessageWriter.isPermanent(new RuntimeException(new SQLTimeoutException("ORA-01013", "72000", 1013))));
+		assertFalse(ChatMessageWriter.isPermanent(new RuntimeException(new SQLException("ORA-00060", "61000", 60))));
+	}
+
+	// batch 실행 오류는 getNextException에 실제 원인이 있음
+	@Test
+	public void nextException() {
+		SQLException batch = new SQLException("batch 실행 오류", "99999", 0);
+		batch.setNextException(new SQLException("ORA-00001", "23000", 1));
+		assertTrue(ChatMessageWriter.isPermanent(new RuntimeException(batch)));
+
+		// 연결이 끊긴 경우에는 뒤의 오류와 관계없이 다시 시도
+		SQLException disconnected = new SQLNonTransientConnectionException("연결 끊김", "08006", 17002);
+		disconnected.setNextException(new SQLException("ORA-00001", "23000", 1));
+		assertFalse(ChatMessageWriter.isPermanent(new RuntimeException(disconnected)));
+	}
+}
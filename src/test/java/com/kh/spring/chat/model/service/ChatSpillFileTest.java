@@ -0,0 +1,162 @@
+package com.kh.spring.chat.model.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatSpillFileTest {
+
+	private File dir;
+	private File file;
+	private ChatSpillFile spillFile;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("chat-spill").toFile();
+		file = new File(dir, "chat-spill.log");
+		spillFile = new ChatSpillFile(file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		spillFile.close();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	// 서버 재시작 : 파일을 다시 여는 것과 같음
+	private ChatSpillFile reopen() throws IOException {
+		spillFile.close();
+		spillFile = new ChatSpillFile(file);
+		return spillFile;
+	}
+
+	private static List<String> texts(List<ChatSpillFile.Line> lines) {
+		List<String> texts = new ArrayList<>();
+		for (ChatSpillFile.Line line : lines) {
+			texts.add(line.getText());
+		}
+		return texts;
+	}
+
+	@Test
+	public void emptyFile() throws IOException {
+		assertFalse(spillFile.hasRemaining());
+		assertTrue(spillFile.read(10).isEmpty());
+		assertTrue(spillFile.finishIfDrained());
+	}
+
+	// 정해진 개수만큼만 읽고, 다음 read는 이어서 읽음
+	@Test
+	public void readInOrder() throws IOException {
+		spillFile.append("a");
+		spillFile.append("b");
+		spillFile.append("c");
+
+		assertTrue(spillFile.hasRemaining());
+		assertEquals(Arrays.asList("a", "b"), texts(spillFile.read(2)));
+		assertEquals(Arrays.asList("c"), texts(spillFile.read(2)));
+		assertTrue(spillFile.read(2).isEmpty());
+	}
+
+	// 저장 완료(commit)한 위치 이후만 재시작 후 다시 읽음
+	@Test
+	public void reopenFromCommittedOffset() throws IOException {
+		spillFile.append("a");
+		spillFile.append("b");
+		spillFile.append("c");
+		List<ChatSpillFile.Line> lines = spillFile.read(2);
+		spillFile.commit(lines.get(0).getEnd());
+
+		reopen();
+		assertTrue(spillFile.hasRemaining());
+		assertEquals(Arrays.asList("b", "c"), texts(spillFile.read(10)));
+	}
+
+	// 읽기만 하고 저장 완료하지 않은 메세지는 재시작 후 다시 읽음
+	@Test
+	public void reopenWithoutCommit() throws IOException {
+		spillFile.append("a");
+		spillFile.append("b");
+		spillFile.read(2);
+
+		reopen();
+		assertEquals(Arrays.asList("a", "b"), texts(spillFile.read(10)));
+	}
+
+	@Test
+	public void finishIfDrained() throws IOException {
+		spillFile.append("a");
+		spillFile.append("b");
+		spillFile.read(1);
+		assertFalse(spillFile.finishIfDrained());
+
+		spillFile.read(1);
+		assertTrue(spillFile.finishIfDrained());
+		assertFalse(file.exists());
+		assertFalse(new File(dir, file.getName() + ".offset").exists());
+		assertFalse(spillFile.hasRemaining());
+
+		// 삭제 후 다시 추가하면 새 파일로 시작
+		spillFile.append("c");
+		assertEquals(Arrays.asList("c"), texts(spillFile.read(10)));
+	}
+
+	// rewrite : head + 저장되지 않은 내용. 헤더가 바뀌므로 이전 파일의 offset은 무시됨
+	@Test
+	public void rewriteKeepsUncommitted() throws IOException {
+		spillFile.append("a");
+		spillFile.append("b");
+		spillFile.append("c");
+		List<ChatSpillFile.Line> lines = spillFile.read(2);
+		spillFile.commit(lines.get(1).getEnd());
+
+		spillFile.rewrite(Arrays.asList("x", "y"));
+		assertEquals(Arrays.asList("x", "y", "c"), texts(spillFile.read(10)));
+
+		reopen();
+		assertEquals(Arrays.asList("x", "y", "c"), texts(spillFile.read(10)));
+	}
+
+	@Test
+	public void rewriteWithoutFile() throws IOException {
+		spillFile.rewrite(Collections.singletonList("x"));
+
+		reopen();
+		assertEquals(Arrays.asList("x"), texts(spillFile.read(10)));
+	}
+
+	// 기록 도중 종료되어 줄바꿈 없이 끝난 줄도 한 줄로 읽음 (ChatMessageWriter에서 dead letter로 처리)
+	@Test
+	public void truncatedLastLine() throws IOException {
+		spillFile.append("a");
+		spillFile.close();
+		Files.write(file.toPath(), "{\"id\":".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		reopen();
+		assertEquals(Arrays.asList("a", "{\"id\":"), texts(spillFile.read(10)));
+
+		// 이어서 추가한 메세지는 잘린 줄과 섞이지 않음
+		spillFile.append("b");
+		assertEquals(Arrays.asList("b"), texts(spillFile.read(10)));
+	}
+}